@@ -0,0 +1,102 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.service.BookingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookingBenchmark {
+    private static final int CONTENDERS = 8;
+
+    @Param("10000")
+    public int showTimes;
+
+    @Param("1000000")
+    public int bookings;
+
+    @Param({ "false", "true" })
+    public boolean partitions;
+
+    private ConfigurableApplicationContext context;
+    private BookingService bookingService;
+    private final String userId = UUID.randomUUID().toString();
+    private final AtomicLong tickets = new AtomicLong();
+    private long firstFreeShowTime;
+    private long firstHotShowTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = PopcornPalaceContext.start("bookings",
+                "--popcorn-palace.booking.partitions.enabled=" + partitions);
+        PopcornPalaceContext.seed(context, showTimes, bookings);
+        bookingService = context.getBean(BookingService.class);
+        // Seeded bookings fill the first showtimes, the rest is split between the two benchmarks
+        firstFreeShowTime = (bookings + PopcornPalaceContext.SEATS_PER_SHOWTIME - 1)
+                / PopcornPalaceContext.SEATS_PER_SHOWTIME + 1;
+        firstHotShowTime = firstFreeShowTime + (showTimes - firstFreeShowTime) / 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Booking createBooking() {
+        long ticket = tickets.getAndIncrement();
+        return bookingService.createBooking(booking(firstFreeShowTime, ticket));
+    }
+
+    @Benchmark
+    @Threads(CONTENDERS)
+    public Booking createBookingConcurrently() {
+        // Every thread books a different seat, a thousand in a row on the same showtime
+        long ticket = tickets.getAndIncrement();
+        return bookingService.createBooking(booking(firstFreeShowTime, ticket));
+    }
+
+    @Benchmark
+    @Threads(CONTENDERS)
+    public boolean createBookingContended() {
+        // Consecutive tickets map to the same seat, so every seat is fought over by all threads
+        long ticket = tickets.getAndIncrement() / CONTENDERS;
+        try {
+            bookingService.createBooking(booking(firstHotShowTime, ticket));
+            return true;
+        } catch (DataIntegrityViolationException seatTaken) {
+            return false;
+        }
+    }
+
+    private Booking booking(long firstShowTime, long ticket) {
+        Booking booking = new Booking();
+        booking.setShowtimeId(firstShowTime + ticket / PopcornPalaceContext.SEATS_PER_SHOWTIME);
+        booking.setSeatNumber((int) (ticket % PopcornPalaceContext.SEATS_PER_SHOWTIME) + 1);
+        booking.setUserId(userId);
+        return booking;
+    }
+}
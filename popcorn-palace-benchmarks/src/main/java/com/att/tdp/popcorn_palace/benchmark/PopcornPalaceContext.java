@@ -0,0 +1,126 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.PopcornPalaceApplication;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.model.TimeOrderedUuidGenerator;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the application against a fresh in-memory H2 database and seeds it with
+ * a realistic schedule: showtimes spread over theaters and days, and bookings
+ * filling the first showtimes seat by seat.
+ */
+public final class PopcornPalaceContext {
+    public static final int THEATERS = 50;
+    public static final int MOVIES = 200;
+    public static final int MOVIE_DURATION_MINUTES = 120;
+    public static final Duration SLOT = Duration.ofHours(3);
+    public static final Instant SCHEDULE_START = Instant.parse("2030-01-01T10:00:00Z");
+    public static final int SEATS_PER_SHOWTIME = 1000;
+
+    private static final int INSERT_CHUNK = 10_000;
+
+    private PopcornPalaceContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String name, String... extraArgs) {
+        return new SpringApplicationBuilder(PopcornPalaceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments(name, extraArgs));
+    }
+
+    /**
+     * Starts the full web application on a random port, see {@link #port(ConfigurableApplicationContext)}.
+     */
+    public static ConfigurableApplicationContext startServer(String name,
+            ApplicationContextInitializer<ConfigurableApplicationContext> initializer, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(extraArgs));
+        args.add("--server.port=0");
+        return new SpringApplicationBuilder(PopcornPalaceApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .initializers(initializer)
+                .run(arguments(name, args.toArray(String[]::new)));
+    }
+
+    public static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static String[] arguments(String name, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driverClassName=org.h2.Driver",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(extraArgs));
+        return args.toArray(String[]::new);
+    }
+
+    public static void seed(ConfigurableApplicationContext context, int showTimes, int bookings) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int movie = 0; movie < MOVIES; movie++) {
+            rows.add(new Object[] { (long) movie + 1, "Movie " + movie, "Drama", MOVIE_DURATION_MINUTES, 7.5, 2030 });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO movie (id, title, genre, duration, rating, release_year) VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+        rows.clear();
+        for (int showTime = 0; showTime < showTimes; showTime++) {
+            Instant startTime = SCHEDULE_START.plus(SLOT.multipliedBy(showTime / THEATERS));
+            rows.add(new Object[] { (long) showTime + 1, (long) (showTime % MOVIES) + 1, theater(showTime % THEATERS),
+                    Timestamp.from(startTime), Timestamp.from(startTime.plus(Duration.ofMinutes(MOVIE_DURATION_MINUTES))),
+                    12.5 });
+            if (rows.size() == INSERT_CHUNK) {
+                insertShowTimes(jdbcTemplate, rows);
+            }
+        }
+        insertShowTimes(jdbcTemplate, rows);
+        // The ids above are explicit so bookings can refer to them, move the sequences past them
+        jdbcTemplate.execute("ALTER SEQUENCE movie_seq RESTART WITH " + (MOVIES + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE show_time_seq RESTART WITH " + (showTimes + 1));
+
+        for (int booking = 0; booking < bookings; booking++) {
+            rows.add(new Object[] { TimeOrderedUuidGenerator.next(), (long) (booking / SEATS_PER_SHOWTIME) + 1,
+                    booking % SEATS_PER_SHOWTIME + 1, UUID.randomUUID().toString() });
+            if (rows.size() == INSERT_CHUNK) {
+                insertBookings(jdbcTemplate, rows);
+            }
+        }
+        insertBookings(jdbcTemplate, rows);
+        // The rows above bypassed ShowTimeService, so the registry hasn't seen these showtimes
+        context.getBean(ShowTimeRegistry.class).reload(context.getBean(IShowTimeRepository.class)::findAllSummaries);
+    }
+
+    public static String theater(int index) {
+        return "Theater " + index;
+    }
+
+    private static void insertShowTimes(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO show_time (id, movie_id, theater, start_time, end_time, price) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private static void insertBookings(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO booking (id, showtime_id, seat_number, user_id) VALUES (?, ?, ?, ?)",
+                rows);
+        rows.clear();
+    }
+}
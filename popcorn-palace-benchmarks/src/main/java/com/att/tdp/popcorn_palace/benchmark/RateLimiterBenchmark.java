@@ -0,0 +1,87 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.concurrent.TokenBuckets;
+import com.att.tdp.popcorn_palace.exception.TooManyRequestsException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.service.BookingRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost the booking rate limit adds to a request: admitting bookings from many users
+ * and addresses that stay within their limits, and turning away one user over its
+ * limit. Needs no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RateLimiterBenchmark {
+    private static final int CONTENDERS = 8;
+
+    @Param("100000")
+    public int users;
+
+    private BookingRateLimiter rateLimiter;
+    private BookingRateLimiter exhaustedRateLimiter;
+    private String[] userIds;
+    private String[] clientAddresses;
+    private final AtomicLong requests = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ServiceMetrics serviceMetrics = new ServiceMetrics(new SimpleMeterRegistry());
+        // Generous enough that the admitted benchmarks never run out of tokens
+        rateLimiter = new BookingRateLimiter(new TokenBuckets(1_000_000, 1_000_000, users),
+                new TokenBuckets(1_000_000, 1_000_000, users), serviceMetrics);
+        exhaustedRateLimiter = new BookingRateLimiter(new TokenBuckets(0.001, 1, users),
+                new TokenBuckets(1_000_000, 1_000_000, users), serviceMetrics);
+        userIds = new String[users];
+        clientAddresses = new String[users];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = UUID.randomUUID().toString();
+            clientAddresses[i] = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    @Benchmark
+    public void admit() {
+        int i = (int) (requests.getAndIncrement() % users);
+        rateLimiter.admit(userIds[i], clientAddresses[i]);
+    }
+
+    @Benchmark
+    @Threads(CONTENDERS)
+    public void admitConcurrently() {
+        int i = (int) (requests.getAndIncrement() % users);
+        rateLimiter.admit(userIds[i], clientAddresses[i]);
+    }
+
+    @Benchmark
+    public boolean reject() {
+        try {
+            exhaustedRateLimiter.admit(userIds[0], clientAddresses[0]);
+            return true;
+        } catch (TooManyRequestsException rejected) {
+            return false;
+        }
+    }
+}
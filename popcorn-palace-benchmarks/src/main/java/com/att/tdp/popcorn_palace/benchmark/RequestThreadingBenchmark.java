@@ -0,0 +1,168 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.config.ConnectionLimitingDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end HTTP throughput of the booking endpoints with Tomcat on platform threads
+ * (the default) versus virtual threads. Many more clients than Tomcat threads keep the
+ * server saturated; {@code dbLatencyMillis} adds a round trip per JDBC statement so the
+ * in-memory database behaves like a networked one. Virtual threads need Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(RequestThreadingBenchmark.CLIENTS)
+public class RequestThreadingBenchmark {
+    static final int CLIENTS = 400;
+
+    @Param({ "false", "true" })
+    public boolean virtualThreads;
+
+    @Param({ "0", "2" })
+    public int dbLatencyMillis;
+
+    @Param("1000")
+    public int showTimes;
+
+    @Param("100000")
+    public int bookings;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI bookingsUri;
+    private URI bookingsPageUri;
+    private final String userId = UUID.randomUUID().toString();
+    private final AtomicLong tickets = new AtomicLong();
+    private long firstFreeShowTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, run the benchmarks jar on a 21+ JVM");
+        }
+        context = PopcornPalaceContext.startServer("requests",
+                applicationContext -> applicationContext.getBeanFactory()
+                        .addBeanPostProcessor(new DatabaseLatencyPostProcessor(dbLatencyMillis)),
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--popcorn-palace.datasource.connection-wait-timeout=5m",
+                "--server.tomcat.accept-count=" + CLIENTS,
+                "--server.tomcat.max-connections=" + CLIENTS * 2);
+        // The latency proxy sits beneath the limiter, so virtual threads are measured as they ship
+        if (virtualThreads && !(context.getBean(DataSource.class) instanceof ConnectionLimitingDataSource)) {
+            throw new IllegalStateException("Virtual threads run without the connection limit");
+        }
+        PopcornPalaceContext.seed(context, showTimes, bookings);
+        firstFreeShowTime = (bookings + PopcornPalaceContext.SEATS_PER_SHOWTIME - 1)
+                / PopcornPalaceContext.SEATS_PER_SHOWTIME + 1;
+
+        String baseUrl = "http://localhost:" + PopcornPalaceContext.port(context);
+        bookingsUri = URI.create(baseUrl + "/bookings");
+        bookingsPageUri = URI.create(baseUrl + "/bookings?limit=20");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int createBooking() throws IOException, InterruptedException {
+        long ticket = tickets.getAndIncrement();
+        String body = "{\"showtimeId\":" + (firstFreeShowTime + ticket / PopcornPalaceContext.SEATS_PER_SHOWTIME)
+                + ",\"seatNumber\":" + (ticket % PopcornPalaceContext.SEATS_PER_SHOWTIME + 1)
+                + ",\"userId\":\"" + userId + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(bookingsUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return send(request);
+    }
+
+    @Benchmark
+    public int getBookingsPage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(bookingsPageUri).GET().build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    /**
+     * Sleeps for every statement a connection prepares, standing in for a network round trip.
+     * The pool is wrapped in a plain proxy rather than a DelegatingDataSource, which the
+     * connection limit leaves alone, so the limit is still put on top of it.
+     */
+    private record DatabaseLatencyPostProcessor(int latencyMillis) implements BeanPostProcessor {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (latencyMillis == 0 || !(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+                    (proxy, method, args) -> {
+                        Object result = invoke(dataSource, method, args);
+                        return result instanceof Connection connection ? delayed(connection) : result;
+                    });
+        }
+
+        private Connection delayed(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                            Thread.sleep(latencyMillis);
+                        }
+                        return invoke(connection, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of serializing a list of each entity in each response format, optionally
+ * gzipped at the default level as the server compresses responses. The size of each
+ * payload is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmark {
+    @Param({ "movies", "showtimes", "bookings" })
+    public String entity;
+
+    @Param({ "json", "cbor", "smile" })
+    public String format;
+
+    @Param({ "false", "true" })
+    public boolean gzip;
+
+    @Param("1000")
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<?> payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Configured like Spring Boot's ObjectMapper, dates as ISO-8601 strings
+        ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        objectMapper = switch (format) {
+            case "cbor" -> jsonMapper.copyWith(new CBORFactory());
+            case "smile" -> jsonMapper.copyWith(new SmileFactory());
+            default -> jsonMapper;
+        };
+        payload = switch (entity) {
+            case "movies" -> movies();
+            case "showtimes" -> showTimes();
+            default -> bookings();
+        };
+        System.out.printf("%n# Payload of %d %s as %s%s: %d bytes%n", size, entity, format, gzip ? "+gzip" : "",
+                serialize().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(payload);
+        if (!gzip) {
+            return body;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private List<Movie> movies() {
+        List<Movie> movies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Movie movie = new Movie();
+            movie.setId((long) i + 1);
+            movie.setTitle("Movie " + i);
+            movie.setGenre("Drama");
+            movie.setDuration(PopcornPalaceContext.MOVIE_DURATION_MINUTES);
+            movie.setRating(7.5);
+            movie.setReleaseYear(2030);
+            movies.add(movie);
+        }
+        return movies;
+    }
+
+    private List<ShowTime> showTimes() {
+        List<ShowTime> showTimes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Instant startTime = PopcornPalaceContext.SCHEDULE_START.plus(PopcornPalaceContext.SLOT.multipliedBy(i));
+            ShowTime showTime = new ShowTime();
+            showTime.setId((long) i + 1);
+            showTime.setMovieId((long) i % PopcornPalaceContext.MOVIES + 1);
+            showTime.setTheater("Theater " + i % PopcornPalaceContext.THEATERS);
+            showTime.setStartTime(startTime);
+            showTime.setEndTime(startTime.plusSeconds(PopcornPalaceContext.MOVIE_DURATION_MINUTES * 60L));
+            showTime.setPrice(12.5);
+            showTimes.add(showTime);
+        }
+        return showTimes;
+    }
+
+    private List<Booking> bookings() {
+        List<Booking> bookings = new ArrayList<>(size);
+        String userId = UUID.randomUUID().toString();
+        for (int i = 0; i < size; i++) {
+            Booking booking = new Booking();
+            booking.setId(UUID.randomUUID());
+            booking.setShowtimeId((long) i / PopcornPalaceContext.SEATS_PER_SHOWTIME + 1);
+            booking.setSeatNumber(i % PopcornPalaceContext.SEATS_PER_SHOWTIME + 1);
+            booking.setUserId(userId);
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,85 @@
+package com.att.tdp.popcorn_palace.benchmark;
+
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.service.ShowTimeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShowTimeBenchmark {
+    @Param("10000")
+    public int showTimes;
+
+    @Param("1000000")
+    public int bookings;
+
+    private ConfigurableApplicationContext context;
+    private ShowTimeService showTimeService;
+    private long slotsPerTheater;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = PopcornPalaceContext.start("showtimes");
+        PopcornPalaceContext.seed(context, showTimes, bookings);
+        showTimeService = context.getBean(ShowTimeService.class);
+        slotsPerTheater = showTimes / PopcornPalaceContext.THEATERS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ShowTime addShowTime() {
+        long ticket = next++;
+        return showTimeService.addShowTime(showTime((int) (ticket % PopcornPalaceContext.THEATERS),
+                slotsPerTheater + ticket / PopcornPalaceContext.THEATERS));
+    }
+
+    @Benchmark
+    public boolean addOverlappingShowTime() {
+        long ticket = next++;
+        try {
+            showTimeService.addShowTime(showTime((int) (ticket % PopcornPalaceContext.THEATERS),
+                    ticket / PopcornPalaceContext.THEATERS % slotsPerTheater));
+            return true;
+        } catch (DataIntegrityViolationException overlap) {
+            return false;
+        }
+    }
+
+    private ShowTime showTime(int theater, long slot) {
+        Instant startTime = PopcornPalaceContext.SCHEDULE_START.plus(PopcornPalaceContext.SLOT.multipliedBy(slot));
+        ShowTime showTime = new ShowTime();
+        showTime.setMovieId(1L);
+        showTime.setTheater(PopcornPalaceContext.theater(theater));
+        showTime.setStartTime(startTime);
+        showTime.setEndTime(startTime.plus(Duration.ofMinutes(PopcornPalaceContext.MOVIE_DURATION_MINUTES)));
+        showTime.setPrice(12.5);
+        return showTime;
+    }
+}
@@ -0,0 +1,189 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Version counters of the movie catalog and of the showtime schedule, used as the
+ * ETags of GET /movies/all and GET /showtimes/all, together with the serialized
+ * body of the current version of each in every format. Every write to movies or
+ * showtimes must call {@link #changed} afterwards. A body is loaded under the version
+ * read before loading, so it is never served with the ETag of a later version.
+ */
+@Component
+public class CatalogVersions {
+    public enum Catalog {
+        MOVIES, SHOWTIMES
+    }
+
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON, ""),
+        CBOR(MediaType.APPLICATION_CBOR, "-cbor"),
+        SMILE(MediaType.parseMediaType("application/x-jackson-smile"), "-smile");
+
+        private final MediaType mediaType;
+        private final String eTagSuffix;
+
+        Format(MediaType mediaType, String eTagSuffix) {
+            this.mediaType = mediaType;
+            this.eTagSuffix = eTagSuffix;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+    private static final int FORMATS = Format.values().length;
+
+    // Versions restart with the process, the epoch keeps ETags of an earlier run from matching
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLongArray versions = new AtomicLongArray(Catalog.values().length);
+    // One slot per catalog and format
+    private final AtomicReferenceArray<Snapshot> snapshots = new AtomicReferenceArray<>(
+            Catalog.values().length * FORMATS);
+    private final ObjectMapper[] objectMappers = new ObjectMapper[FORMATS];
+    private final int maxBodySize;
+
+    public CatalogVersions(ObjectMapper objectMapper,
+            @Value("${popcorn-palace.cache.responses.max-body-size:16777216}") int maxBodySize) {
+        objectMappers[Format.JSON.ordinal()] = objectMapper;
+        objectMappers[Format.CBOR.ordinal()] = objectMapper.copyWith(new CBORFactory());
+        objectMappers[Format.SMILE.ordinal()] = objectMapper.copyWith(new SmileFactory());
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Moves the catalog to a new version. Inside a transaction the version moves when
+     * it completes, so a body loaded before the commit can't be cached as the new version.
+     */
+    public void changed(Catalog catalog) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(catalog);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                bump(catalog);
+            }
+        });
+    }
+
+    /**
+     * The ETag of the current version in the given format, which differs per format
+     * and content encoding as each of them is a different representation.
+     */
+    public String eTag(Catalog catalog, Format format, boolean gzipped) {
+        return eTag(versions.get(catalog.ordinal()), format) + (gzipped ? GZIP_ETAG_SUFFIX : "");
+    }
+
+    /**
+     * Returns the body of the current version serialized in the given format, calling
+     * the loader only when it isn't cached. Bodies larger than max-body-size are served
+     * but not kept.
+     */
+    public Snapshot snapshot(Catalog catalog, Format format, Supplier<?> loader) {
+        int slot = catalog.ordinal() * FORMATS + format.ordinal();
+        long version = versions.get(catalog.ordinal());
+        Snapshot cached = snapshots.get(slot);
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = new Snapshot(version, eTag(version, format),
+                    objectMappers[format.ordinal()].writeValueAsBytes(loader.get()));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (snapshot.body().length <= maxBodySize) {
+            snapshots.compareAndSet(slot, cached, snapshot);
+        }
+        return snapshot;
+    }
+
+    private void bump(Catalog catalog) {
+        versions.incrementAndGet(catalog.ordinal());
+        for (int format = 0; format < FORMATS; format++) {
+            snapshots.set(catalog.ordinal() * FORMATS + format, null);
+        }
+    }
+
+    private String eTag(long version, Format format) {
+        return epoch + "-" + version + format.eTagSuffix;
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final String eTag;
+        private final byte[] body;
+        // Compressed on first use, most clients of a version ask for the same encoding
+        private volatile byte[] gzipped;
+
+        Snapshot(long version, String eTag, byte[] body) {
+            this.version = version;
+            this.eTag = eTag;
+            this.body = body;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public String eTag() {
+            return eTag;
+        }
+
+        public String eTag(boolean gzipped) {
+            return gzipped ? eTag + GZIP_ETAG_SUFFIX : eTag;
+        }
+
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         * The body gzipped at the highest level, which pays off as it is compressed once per version.
+         */
+        public byte[] gzipped() {
+            byte[] compressed = gzipped;
+            if (compressed == null) {
+                compressed = gzip(body);
+                gzipped = compressed;
+            }
+            return compressed;
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                out.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+    }
+}
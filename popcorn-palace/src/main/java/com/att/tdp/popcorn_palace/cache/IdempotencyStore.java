@@ -0,0 +1,137 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.exception.IdempotencyKeyReuseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of requests sent with an idempotency key, so a retry gets
+ * the original result without running the request again. Keys are spread over
+ * lock-striped segments; each segment is bounded and drops its oldest keys once
+ * they are older than the TTL or the segment is full. A request that arrives while
+ * the first one with the same key is still running waits for it and shares its
+ * result. Failed requests are forgotten so that they can be retried.
+ */
+@Component
+public class IdempotencyStore {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final int maxKeysPerSegment;
+
+    public IdempotencyStore(@Value("${popcorn-palace.idempotency.ttl:24h}") Duration ttl,
+            @Value("${popcorn-palace.idempotency.max-keys:100000}") int maxKeys) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxKeysPerSegment = Math.max(1, maxKeys / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Runs the action unless a request with the same key already ran or is running, in
+     * which case its result is returned instead. The fingerprint identifies the request
+     * body; reusing a key with a different fingerprint is rejected.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object fingerprint, Supplier<T> action) {
+        Segment segment = segmentFor(key);
+        Entry entry;
+        Entry existing;
+        synchronized (segment) {
+            long now = System.nanoTime();
+            segment.expire(now);
+            existing = segment.entries.get(key);
+            if (existing != null && !Objects.equals(existing.fingerprint, fingerprint)) {
+                throw new IdempotencyKeyReuseException(
+                        "The Idempotency-Key '" + key + "' was already used for a different request");
+            }
+            entry = existing != null ? existing : new Entry(fingerprint, now + ttlNanos);
+            if (existing == null) {
+                segment.entries.put(key, entry);
+                segment.evictOverflow(maxKeysPerSegment);
+            }
+        }
+        if (existing != null) {
+            return (T) awaitResult(existing);
+        }
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error error) {
+            synchronized (segment) {
+                segment.entries.remove(key, entry);
+            }
+            entry.result.completeExceptionally(error);
+            throw error;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static Object awaitResult(Entry entry) {
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            // Coalesced requests fail the same way as the request they waited for
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final Object fingerprint;
+        private final long expiresAtNanos;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(Object fingerprint, long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final class Segment {
+        // Insertion order is also expiry order since every key lives for the same TTL
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        private void expire(long now) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext() && iterator.next().expiresAtNanos - now <= 0) {
+                iterator.remove();
+            }
+        }
+
+        private void evictOverflow(int maxKeys) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            for (int overflow = entries.size() - maxKeys; overflow > 0; overflow--) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Movie;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of movies, keyed by id with a secondary index by title.
+ * Entries are copies, so callers may modify what they get back. Every write to a
+ * movie must {@link #invalidate} it afterwards; a lookup that started loading
+ * before an invalidation does not put its (possibly stale) result in the cache.
+ */
+@Component
+public class MovieCache {
+    @Value("${popcorn-palace.cache.movies.max-size:1000}")
+    private int maxSize = 1000;
+
+    private final ServiceMetrics serviceMetrics;
+    private final LinkedHashMap<Long, Movie> moviesById = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> idsByTitle = new HashMap<>();
+    private long generation;
+
+    public MovieCache(ServiceMetrics serviceMetrics) {
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    public Optional<Movie> findById(Long id, Function<Long, Optional<Movie>> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Movie cached = moviesById.get(id);
+            if (cached != null) {
+                serviceMetrics.countMovieCacheHit();
+                return Optional.of(copy(cached));
+            }
+            loadGeneration = generation;
+        }
+        return load(id, loader, loadGeneration);
+    }
+
+    public Optional<Movie> findByTitle(String title, Function<String, Optional<Movie>> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Long id = idsByTitle.get(title);
+            Movie cached = id == null ? null : moviesById.get(id);
+            if (cached != null) {
+                serviceMetrics.countMovieCacheHit();
+                return Optional.of(copy(cached));
+            }
+            loadGeneration = generation;
+        }
+        return load(title, loader, loadGeneration);
+    }
+
+    /**
+     * Drops the movie with the given id and whatever movies are cached under the given titles.
+     */
+    public synchronized void invalidate(Long id, String... titles) {
+        generation++;
+        if (id != null) {
+            remove(id);
+        }
+        for (String title : titles) {
+            Long cachedId = title == null ? null : idsByTitle.get(title);
+            if (cachedId != null) {
+                remove(cachedId);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return moviesById.size();
+    }
+
+    private <K> Optional<Movie> load(K key, Function<K, Optional<Movie>> loader, long loadGeneration) {
+        serviceMetrics.countMovieCacheMiss();
+        Optional<Movie> movie = loader.apply(key);
+        movie.ifPresent(loaded -> put(loaded, loadGeneration));
+        return movie;
+    }
+
+    private synchronized void put(Movie movie, long loadGeneration) {
+        if (loadGeneration != generation || movie.getId() == null || movie.getTitle() == null) {
+            return;
+        }
+        remove(movie.getId());
+        moviesById.put(movie.getId(), copy(movie));
+        idsByTitle.put(movie.getTitle(), movie.getId());
+        Iterator<Movie> leastRecentlyUsed = moviesById.values().iterator();
+        while (moviesById.size() > maxSize) {
+            Movie evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            idsByTitle.remove(evicted.getTitle(), evicted.getId());
+            serviceMetrics.countMovieCacheEviction();
+        }
+    }
+
+    private void remove(Long id) {
+        Movie removed = moviesById.remove(id);
+        if (removed != null) {
+            idsByTitle.remove(removed.getTitle(), id);
+        }
+    }
+
+    private static Movie copy(Movie movie) {
+        Movie copy = new Movie();
+        copy.setId(movie.getId());
+        copy.setTitle(movie.getTitle());
+        copy.setGenre(movie.getGenre());
+        copy.setDuration(movie.getDuration());
+        copy.setRating(movie.getRating());
+        copy.setReleaseYear(movie.getReleaseYear());
+        return copy;
+    }
+}
@@ -0,0 +1,299 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.model.ShowTimeSales;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Seats sold and revenue of every live showtime and movie, so that sales are read
+ * without counting bookings in the database. Sales are recorded on LongAdders, which
+ * spread concurrent bookings of a popular showtime over separate cells instead of
+ * having them fight over one counter; a showtime's revenue is its seats sold times
+ * its price, and a movie's is kept in cents.
+ * <p>
+ * Showtimes are added, repriced and removed under the lock, recording a sale takes
+ * no lock. All counters are loaded the first time they are read and set to the
+ * database's counts by {@link #reconcile}. Every booking write is bracketed by
+ * {@link #beginWrite} and {@link #endWrite} around both its commit and its sale, so
+ * reconcile can tell which showtimes were written while it counted and leaves those
+ * for its next run. Bookings confirmed from the booking journal count as sold before
+ * they reach the database, so the ones still waiting in it are added to its counts.
+ */
+@Component
+public class SalesCounters {
+    private final ConcurrentHashMap<Long, ShowTimeCounters> showTimes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, MovieCounters> movies = new ConcurrentHashMap<>();
+    // Kept apart from the counters so writes are tracked before the showtime is loaded
+    private final ConcurrentHashMap<Long, Writes> writes = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Returns the showtime's counters, or null when there is no such showtime.
+     */
+    public ShowTimeCounters findShowTime(Long showtimeId, Supplier<List<ShowTimeSales>> loader) {
+        if (!loaded) {
+            load(loader);
+        }
+        return showTimes.get(showtimeId);
+    }
+
+    /**
+     * Returns the movie's counters, or null when the movie has no showtimes.
+     */
+    public MovieCounters findMovie(Long movieId, Supplier<List<ShowTimeSales>> loader) {
+        if (!loaded) {
+            load(loader);
+        }
+        return movies.get(movieId);
+    }
+
+    public synchronized void load(Supplier<List<ShowTimeSales>> loader) {
+        if (!loaded) {
+            reconcile(loader);
+        }
+    }
+
+    public void recordSold(Long showtimeId, int seats) {
+        ShowTimeCounters counters = showTimes.get(showtimeId);
+        if (counters != null) {
+            counters.add(seats);
+        }
+    }
+
+    /**
+     * Records a sale confirmed from the booking journal, which is counted as waiting
+     * in the journal until {@link #recordDrained}.
+     */
+    public void recordJournaled(Long showtimeId, int seats) {
+        writes.computeIfAbsent(showtimeId, id -> new Writes()).undrained.add(seats);
+        recordSold(showtimeId, seats);
+    }
+
+    /**
+     * Records that journaled bookings were taken out of the journal, whether they were
+     * inserted or not.
+     */
+    public void recordDrained(Long showtimeId, int seats) {
+        Writes showTimeWrites = writes.get(showtimeId);
+        if (showTimeWrites != null) {
+            showTimeWrites.undrained.add(-seats);
+        }
+    }
+
+    /**
+     * Called before a booking of the showtime is written; every call must be followed
+     * by {@link #endWrite} once the booking committed or failed and its sale was recorded.
+     */
+    public void beginWrite(Long showtimeId) {
+        writes.computeIfAbsent(showtimeId, id -> new Writes()).started.increment();
+    }
+
+    public void endWrite(Long showtimeId) {
+        Writes showTimeWrites = writes.get(showtimeId);
+        if (showTimeWrites != null) {
+            showTimeWrites.finished.increment();
+        }
+    }
+
+    /**
+     * Adds the showtime, or moves its sales to its new movie or price.
+     */
+    public synchronized void register(Long showtimeId, Long movieId, Double price) {
+        ShowTimeCounters existing = showTimes.get(showtimeId);
+        long priceCents = cents(price);
+        if (existing != null && existing.movieId.equals(movieId) && existing.priceCents == priceCents) {
+            return;
+        }
+        LongAdder seatsSold = existing != null ? existing.seatsSold : new LongAdder();
+        if (existing != null) {
+            detach(existing);
+        }
+        ShowTimeCounters counters = new ShowTimeCounters(movieId, priceCents, seatsSold,
+                movies.computeIfAbsent(movieId, id -> new MovieCounters()));
+        long sold = seatsSold.sum();
+        counters.movie.showTimes++;
+        counters.movie.seatsSold.add(sold);
+        counters.movie.revenueCents.add(sold * priceCents);
+        showTimes.put(showtimeId, counters);
+    }
+
+    public synchronized void remove(Long showtimeId) {
+        writes.remove(showtimeId);
+        ShowTimeCounters counters = showTimes.remove(showtimeId);
+        if (counters != null) {
+            detach(counters);
+        }
+    }
+
+    /**
+     * Sets every counter to the sales the loader counts in the database plus the
+     * bookings still waiting in the journal. The counters are read before the loader
+     * runs and moved by the difference between those counts and what they read, so
+     * only showtimes without a booking write in flight from before the loader ran until
+     * after it returned are corrected; the others, and their movies, are left for the
+     * next run, since a write committed while counting may be counted by the database
+     * and still be recorded after.
+     */
+    public synchronized void reconcile(Supplier<List<ShowTimeSales>> loader) {
+        Map<Long, long[]> writesBefore = readWrites();
+        Map<Long, Long> showTimesBefore = new HashMap<>();
+        showTimes.forEach((showtimeId, counters) -> showTimesBefore.put(showtimeId, counters.seatsSold.sum()));
+        Map<Long, long[]> moviesBefore = new HashMap<>();
+        movies.forEach((movieId, movie) -> moviesBefore.put(movieId,
+                new long[] { movie.seatsSold.sum(), movie.revenueCents.sum() }));
+        List<ShowTimeSales> sales = loader.get();
+        Map<Long, long[]> writesAfter = readWrites();
+
+        Set<Long> showtimeIds = new HashSet<>();
+        Set<Long> writtenMovieIds = new HashSet<>();
+        Map<Long, long[]> movieSales = new HashMap<>();
+        for (ShowTimeSales showTimeSales : sales) {
+            Long showtimeId = showTimeSales.getShowtimeId();
+            showtimeIds.add(showtimeId);
+            long seatsBefore = showTimesBefore.getOrDefault(showtimeId, 0L);
+            ShowTimeCounters previous = showTimes.get(showtimeId);
+            register(showtimeId, showTimeSales.getMovieId(), showTimeSales.getPrice());
+            ShowTimeCounters counters = showTimes.get(showtimeId);
+            if (counters != previous) {
+                moveSnapshot(moviesBefore, previous, counters, seatsBefore);
+            }
+            long[] before = writesBefore.getOrDefault(showtimeId, new long[3]);
+            long[] after = writesAfter.getOrDefault(showtimeId, new long[3]);
+            if (before[0] != before[1] || !Arrays.equals(before, after)) {
+                writtenMovieIds.add(counters.movieId);
+                if (previous != null) {
+                    writtenMovieIds.add(previous.movieId);
+                }
+                continue;
+            }
+            long seatsSold = showTimeSales.getSeatsSold() + after[2];
+            counters.seatsSold.add(seatsSold - seatsBefore);
+            long[] movieTotals = movieSales.computeIfAbsent(showTimeSales.getMovieId(), id -> new long[2]);
+            movieTotals[0] += seatsSold;
+            movieTotals[1] += seatsSold * counters.priceCents;
+        }
+        for (Long showtimeId : List.copyOf(showTimes.keySet())) {
+            if (!showtimeIds.contains(showtimeId)) {
+                moveSnapshot(moviesBefore, showTimes.get(showtimeId), null,
+                        showTimesBefore.getOrDefault(showtimeId, 0L));
+                remove(showtimeId);
+            }
+        }
+        movieSales.forEach((movieId, totals) -> {
+            if (writtenMovieIds.contains(movieId)) {
+                return;
+            }
+            MovieCounters movie = movies.get(movieId);
+            long[] before = moviesBefore.getOrDefault(movieId, new long[2]);
+            movie.seatsSold.add(totals[0] - before[0]);
+            movie.revenueCents.add(totals[1] - before[1]);
+        });
+        loaded = true;
+    }
+
+    // Finished writes are read before started ones, so a write that ends in between shows as in flight
+    private Map<Long, long[]> readWrites() {
+        Map<Long, long[]> read = new HashMap<>();
+        writes.forEach((showtimeId, showTimeWrites) -> read.put(showtimeId, new long[] {
+                showTimeWrites.finished.sum(), showTimeWrites.started.sum(), showTimeWrites.undrained.sum() }));
+        return read;
+    }
+
+    // A showtime moved to another movie or price takes its sales along, and so does its share of the snapshot
+    private static void moveSnapshot(Map<Long, long[]> moviesBefore, ShowTimeCounters from, ShowTimeCounters to,
+            long seatsBefore) {
+        if (from != null) {
+            long[] before = moviesBefore.computeIfAbsent(from.movieId, id -> new long[2]);
+            before[0] -= seatsBefore;
+            before[1] -= seatsBefore * from.priceCents;
+        }
+        if (to != null) {
+            long[] before = moviesBefore.computeIfAbsent(to.movieId, id -> new long[2]);
+            before[0] += seatsBefore;
+            before[1] += seatsBefore * to.priceCents;
+        }
+    }
+
+    public int size() {
+        return showTimes.size();
+    }
+
+    private void detach(ShowTimeCounters counters) {
+        long sold = counters.seatsSold.sum();
+        counters.movie.seatsSold.add(-sold);
+        counters.movie.revenueCents.add(-sold * counters.priceCents);
+        if (--counters.movie.showTimes == 0) {
+            movies.remove(counters.movieId, counters.movie);
+        }
+    }
+
+    private static long cents(Double price) {
+        return price == null ? 0 : Math.round(price * 100);
+    }
+
+    public static final class ShowTimeCounters {
+        private final Long movieId;
+        private final long priceCents;
+        private final LongAdder seatsSold;
+        private final MovieCounters movie;
+
+        private ShowTimeCounters(Long movieId, long priceCents, LongAdder seatsSold, MovieCounters movie) {
+            this.movieId = movieId;
+            this.priceCents = priceCents;
+            this.seatsSold = seatsSold;
+            this.movie = movie;
+        }
+
+        private void add(int seats) {
+            seatsSold.add(seats);
+            movie.seatsSold.add(seats);
+            movie.revenueCents.add(seats * priceCents);
+        }
+
+        public Long movieId() {
+            return movieId;
+        }
+
+        public long seatsSold() {
+            return seatsSold.sum();
+        }
+
+        public double revenue() {
+            return seatsSold.sum() * priceCents / 100.0;
+        }
+    }
+
+    private static final class Writes {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder finished = new LongAdder();
+        private final LongAdder undrained = new LongAdder();
+    }
+
+    public static final class MovieCounters {
+        private final LongAdder seatsSold = new LongAdder();
+        private final LongAdder revenueCents = new LongAdder();
+        // Only changed under the SalesCounters lock
+        private volatile int showTimes;
+
+        public int showTimes() {
+            return showTimes;
+        }
+
+        public long seatsSold() {
+            return seatsSold.sum();
+        }
+
+        public double revenue() {
+            return revenueCents.sum() / 100.0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size bitset of the seats of a single showtime. Seat n is stored in bit
+ * n - 1, claims and releases are single-word CAS operations so any number of
+ * threads can race for the same seat and exactly one of them wins.
+ */
+public class SeatBitSet {
+    private final AtomicLongArray words;
+    private final int capacity;
+
+    public SeatBitSet(int capacity) {
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    public boolean tryClaim(int seatNumber) {
+        int index = wordIndex(seatNumber);
+        long mask = bitMask(seatNumber);
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int seatNumber) {
+        int index = wordIndex(seatNumber);
+        long mask = bitMask(seatNumber);
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) == 0 || words.compareAndSet(index, current, current & ~mask)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isClaimed(int seatNumber) {
+        return (words.get(wordIndex(seatNumber)) & bitMask(seatNumber)) != 0;
+    }
+
+    /**
+     * Copies the words of the bitset. Each word is read atomically, so a claim racing
+     * with the copy is either fully visible in it or not at all.
+     */
+    public long[] toLongArray() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return copy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private int wordIndex(int seatNumber) {
+        if (seatNumber <= 0 || seatNumber > capacity) {
+            throw new IllegalArgumentException("Seat number must be between 1 and " + capacity);
+        }
+        return (seatNumber - 1) >>> 6;
+    }
+
+    private static long bitMask(int seatNumber) {
+        return 1L << ((seatNumber - 1) & 63);
+    }
+}
@@ -0,0 +1,68 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.model.Booking;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory seat occupancy of every showtime that has been booked since startup.
+ * A showtime's bitset is loaded lazily from its existing bookings the first time
+ * it is touched, after that taken seats are rejected without a database round trip.
+ */
+@Component
+public class SeatOccupancy {
+    @Value("${popcorn-palace.booking.max-seat-number:1024}")
+    private int maxSeatNumber = 1024;
+
+    private final ConcurrentHashMap<Long, SeatBitSet> showTimeSeats = new ConcurrentHashMap<>();
+
+    public boolean tryClaim(Long showtimeId, int seatNumber, Function<Long, List<Booking>> loader) {
+        return seatsOf(showtimeId, loader).tryClaim(seatNumber);
+    }
+
+    public void release(Long showtimeId, int seatNumber) {
+        SeatBitSet seats = showTimeSeats.get(showtimeId);
+        if (seats != null) {
+            seats.release(seatNumber);
+        }
+    }
+
+    /**
+     * Returns the seats of the showtime as words of its bitset, seat n in bit n - 1.
+     */
+    public long[] snapshot(Long showtimeId, Function<Long, List<Booking>> loader) {
+        return seatsOf(showtimeId, loader).toLongArray();
+    }
+
+    public boolean isLoaded(Long showtimeId) {
+        return showTimeSeats.containsKey(showtimeId);
+    }
+
+    public void evict(Long showtimeId) {
+        showTimeSeats.remove(showtimeId);
+    }
+
+    public int getMaxSeatNumber() {
+        return maxSeatNumber;
+    }
+
+    private SeatBitSet seatsOf(Long showtimeId, Function<Long, List<Booking>> loader) {
+        SeatBitSet seats = showTimeSeats.get(showtimeId);
+        if (seats != null) {
+            return seats;
+        }
+        SeatBitSet loadedSeats = new SeatBitSet(maxSeatNumber);
+        for (Booking booking : loader.apply(showtimeId)) {
+            Integer seatNumber = booking.getSeatNumber();
+            if (seatNumber != null && seatNumber > 0 && seatNumber <= maxSeatNumber) {
+                loadedSeats.tryClaim(seatNumber);
+            }
+        }
+        SeatBitSet existingSeats = showTimeSeats.putIfAbsent(showtimeId, loadedSeats);
+        return existingSeats != null ? existingSeats : loadedSeats;
+    }
+}
@@ -0,0 +1,259 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Per-theater schedule used for showtime overlap checks. Each theater keeps its
+ * showtimes in an interval tree: a balanced (AVL) tree ordered by start time in
+ * which every node also holds the latest end time in its subtree. An overlap query
+ * skips every subtree that ends before the queried start or starts after its end,
+ * so it takes O(log n + k) however long the showtimes in the theater are.
+ * A theater is loaded from the database the first time it is queried.
+ * <p>
+ * Writers {@link #tryReserve} an interval before saving a showtime: the check and a
+ * placeholder for the interval are one step under the theater's lock, so two
+ * overlapping showtimes can't both pass the check while the first is being saved.
+ * The placeholder is replaced by the showtime once it is saved, or cancelled.
+ */
+@Component
+public class ShowTimeIntervalIndex {
+    private static final Comparator<Slot> BY_START = Comparator.comparing(Slot::startTime)
+            .thenComparing(Slot::id);
+
+    private final ConcurrentHashMap<String, TheaterSchedule> theaters = new ConcurrentHashMap<>();
+
+    private final AtomicLong placeholderIds = new AtomicLong();
+
+    public List<Long> findOverlapping(String theater, Instant startTime, Instant endTime,
+            Function<String, List<ShowTime>> loader) {
+        TheaterSchedule schedule = load(theater, loader);
+        synchronized (schedule) {
+            return schedule.overlapping(startTime, endTime);
+        }
+    }
+
+    /**
+     * Holds the interval in the theater's schedule unless it overlaps another showtime
+     * or reservation, in which case null is returned. A showtime that is being moved
+     * passes its own id so that its current slot doesn't count as an overlap.
+     */
+    public Reservation tryReserve(String theater, Instant startTime, Instant endTime, Long movingShowTimeId,
+            Function<String, List<ShowTime>> loader) {
+        TheaterSchedule schedule = load(theater, loader);
+        synchronized (schedule) {
+            for (Long overlappingId : schedule.overlapping(startTime, endTime)) {
+                if (!overlappingId.equals(movingShowTimeId)) {
+                    return null;
+                }
+            }
+            // Negative so that they never clash with the id of a saved showtime
+            Slot placeholder = new Slot(placeholderIds.decrementAndGet(), startTime, endTime);
+            schedule.put(placeholder);
+            return new Reservation(theater, placeholder.id());
+        }
+    }
+
+    /**
+     * Replaces the reservation with the showtime saved for it.
+     */
+    public void confirm(Reservation reservation, ShowTime savedShowTime) {
+        TheaterSchedule schedule = theaters.get(reservation.theater());
+        synchronized (schedule) {
+            schedule.remove(reservation.placeholderId());
+            schedule.put(Slot.of(savedShowTime));
+        }
+    }
+
+    public void cancel(Reservation reservation) {
+        TheaterSchedule schedule = theaters.get(reservation.theater());
+        synchronized (schedule) {
+            schedule.remove(reservation.placeholderId());
+        }
+    }
+
+    public void remove(Long showTimeId, String theater) {
+        TheaterSchedule schedule = theaters.get(theater);
+        if (schedule == null) {
+            return;
+        }
+        synchronized (schedule) {
+            schedule.remove(showTimeId);
+        }
+    }
+
+    private TheaterSchedule load(String theater, Function<String, List<ShowTime>> loader) {
+        TheaterSchedule schedule = theaters.computeIfAbsent(theater, key -> new TheaterSchedule());
+        synchronized (schedule) {
+            if (!schedule.loaded) {
+                for (ShowTime showTime : loader.apply(theater)) {
+                    schedule.put(Slot.of(showTime));
+                }
+                schedule.loaded = true;
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * An interval held in a theater's schedule until its showtime is saved.
+     */
+    public record Reservation(String theater, Long placeholderId) {
+    }
+
+    private record Slot(Long id, Instant startTime, Instant endTime) {
+        static Slot of(ShowTime showTime) {
+            return new Slot(showTime.getId(), showTime.getStartTime(), showTime.getEndTime());
+        }
+    }
+
+    private static class TheaterSchedule {
+        private final Map<Long, Slot> byId = new HashMap<>();
+        private Node root;
+        private boolean loaded;
+
+        void put(Slot slot) {
+            remove(slot.id());
+            root = insert(root, slot);
+            byId.put(slot.id(), slot);
+        }
+
+        void remove(Long id) {
+            Slot slot = byId.remove(id);
+            if (slot != null) {
+                root = delete(root, slot);
+            }
+        }
+
+        // In start time order
+        List<Long> overlapping(Instant startTime, Instant endTime) {
+            List<Long> overlapping = new ArrayList<>();
+            collect(root, startTime, endTime, overlapping);
+            return overlapping;
+        }
+
+        private static void collect(Node node, Instant startTime, Instant endTime, List<Long> overlapping) {
+            if (node == null || node.maxEnd.isBefore(startTime)) {
+                return;
+            }
+            collect(node.left, startTime, endTime, overlapping);
+            if (node.slot.startTime().isAfter(endTime)) {
+                // So does everything to the right
+                return;
+            }
+            if (!node.slot.endTime().isBefore(startTime)) {
+                overlapping.add(node.slot.id());
+            }
+            collect(node.right, startTime, endTime, overlapping);
+        }
+
+        private static Node insert(Node node, Slot slot) {
+            if (node == null) {
+                return new Node(slot);
+            }
+            if (BY_START.compare(slot, node.slot) < 0) {
+                node.left = insert(node.left, slot);
+            } else {
+                node.right = insert(node.right, slot);
+            }
+            return balance(node);
+        }
+
+        private static Node delete(Node node, Slot slot) {
+            if (node == null) {
+                return null;
+            }
+            int comparison = BY_START.compare(slot, node.slot);
+            if (comparison < 0) {
+                node.left = delete(node.left, slot);
+            } else if (comparison > 0) {
+                node.right = delete(node.right, slot);
+            } else if (node.left == null || node.right == null) {
+                return node.left != null ? node.left : node.right;
+            } else {
+                Node successor = node.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                node.slot = successor.slot;
+                node.right = delete(node.right, successor.slot);
+            }
+            return balance(node);
+        }
+
+        private static Node balance(Node node) {
+            node.update();
+            int skew = height(node.left) - height(node.right);
+            if (skew > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    node.left = rotateLeft(node.left);
+                }
+                return rotateRight(node);
+            }
+            if (skew < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    node.right = rotateRight(node.right);
+                }
+                return rotateLeft(node);
+            }
+            return node;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node pivot = node.right;
+            node.right = pivot.left;
+            pivot.left = node;
+            node.update();
+            pivot.update();
+            return pivot;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node pivot = node.left;
+            node.left = pivot.right;
+            pivot.right = node;
+            node.update();
+            pivot.update();
+            return pivot;
+        }
+
+        private static int height(Node node) {
+            return node == null ? 0 : node.height;
+        }
+    }
+
+    private static final class Node {
+        private Slot slot;
+        private Node left;
+        private Node right;
+        private int height;
+        // The latest end time of this node's subtree
+        private Instant maxEnd;
+
+        private Node(Slot slot) {
+            this.slot = slot;
+            update();
+        }
+
+        private void update() {
+            height = 1 + Math.max(TheaterSchedule.height(left), TheaterSchedule.height(right));
+            maxEnd = slot.endTime();
+            if (left != null && left.maxEnd.isAfter(maxEnd)) {
+                maxEnd = left.maxEnd;
+            }
+            if (right != null && right.maxEnd.isAfter(maxEnd)) {
+                maxEnd = right.maxEnd;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.att.tdp.popcorn_palace.cache;
+
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Every live showtime id with its start time, so that a booking is validated
+ * without a database round trip. Seat capacity is the same for every showtime and
+ * is checked against popcorn-palace.booking.max-seat-number. All showtimes are
+ * loaded at startup or the first time the registry is read; after that
+ * ShowTimeService keeps it in sync by calling {@link #register} and {@link #remove}
+ * after each write. Writes made while the load runs wait for it and are applied on top.
+ */
+@Component
+public class ShowTimeRegistry {
+    private final ConcurrentHashMap<Long, Entry> showTimes = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Returns the showtime, or null when there is no such showtime.
+     */
+    public Entry find(Long showtimeId, Supplier<List<ShowTimeSummary>> loader) {
+        if (!loaded) {
+            load(loader);
+        }
+        return showTimes.get(showtimeId);
+    }
+
+    public synchronized void load(Supplier<List<ShowTimeSummary>> loader) {
+        if (loaded) {
+            return;
+        }
+        for (ShowTimeSummary showTime : loader.get()) {
+            showTimes.putIfAbsent(showTime.getId(), new Entry(showTime.getStartTime()));
+        }
+        loaded = true;
+    }
+
+    /**
+     * Drops everything and loads all showtimes again, for when rows were written
+     * without going through ShowTimeService.
+     */
+    public synchronized void reload(Supplier<List<ShowTimeSummary>> loader) {
+        showTimes.clear();
+        loaded = false;
+        load(loader);
+    }
+
+    public synchronized void register(Long showtimeId, Instant startTime) {
+        showTimes.put(showtimeId, new Entry(startTime));
+    }
+
+    public synchronized void remove(Long showtimeId) {
+        showTimes.remove(showtimeId);
+    }
+
+    public int size() {
+        return showTimes.size();
+    }
+
+    public record Entry(Instant startTime) {
+    }
+}
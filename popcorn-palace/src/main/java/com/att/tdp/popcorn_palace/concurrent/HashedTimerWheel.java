@@ -0,0 +1,190 @@
+package com.att.tdp.popcorn_palace.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel for large numbers of short-lived timeouts. Scheduling and
+ * cancelling are O(1) and lock-free; a single worker thread wakes up once per tick
+ * and expires the timeouts of one bucket, so expiry is accurate to one tick.
+ * Cancelled timeouts are dropped lazily when the worker reaches their bucket.
+ * Tasks run on the worker thread and must be short.
+ */
+public class HashedTimerWheel implements AutoCloseable {
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int SHUT_DOWN = 2;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] buckets;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private final String threadName;
+    private volatile Thread worker;
+    private volatile long startNanos;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(Duration tickDuration, int ticksPerWheel, String threadName) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (ticksPerWheel <= 0 || Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("Ticks per wheel must be a power of two");
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.mask = ticksPerWheel - 1;
+        this.buckets = new Queue[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.threadName = threadName;
+    }
+
+    /**
+     * Runs the task once the delay has passed, unless the returned timeout is cancelled first.
+     * The worker thread is started by the first call.
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() + delay.toNanos() - startNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        Thread currentWorker = worker;
+        if (state.getAndSet(SHUT_DOWN) == STARTED && currentWorker != null) {
+            currentWorker.interrupt();
+            try {
+                currentWorker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        if (state.get() == INIT && state.compareAndSet(INIT, STARTED)) {
+            // 0 marks "not started yet" for the threads waiting below
+            long now = System.nanoTime();
+            startNanos = now == 0 ? 1 : now;
+            worker = new Thread(this::run, threadName);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        if (state.get() == SHUT_DOWN) {
+            throw new IllegalStateException("The timer wheel has been closed");
+        }
+        while (startNanos == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (state.get() == STARTED) {
+            if (!awaitTick(tick)) {
+                return;
+            }
+            transferPending(tick);
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the given tick, returns false if the wheel was closed meanwhile.
+     */
+    private boolean awaitTick(long tick) {
+        long deadline = (tick + 1) * tickNanos;
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (state.get() == SHUT_DOWN) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            long expiryTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / buckets.length;
+            buckets[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        for (int remaining = bucket.size(); remaining > 0; remaining--) {
+            Timeout timeout = bucket.poll();
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            if (timeout.remainingRounds <= 0) {
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+                bucket.add(timeout);
+            }
+        }
+    }
+
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Only accessed by the worker thread
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Returns true if the task was prevented from running.
+         */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(PENDING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.att.tdp.popcorn_palace.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One token bucket per key, refilling at a fixed rate up to a burst. A bucket is a
+ * single timestamp, the time at which it will be full again: taking a token moves it
+ * one refill interval later, and a token is available while it is less than a burst
+ * of intervals ahead of now. A bucket that is full again is the same as a new one,
+ * so dropping it loses nothing.
+ * <p>
+ * Keys are spread over lock-striped segments, each an access-ordered map bounded to
+ * its share of the maximum. Every acquire drops the segment's least recently used
+ * buckets while they are full again, and a full segment drops its least recently
+ * used bucket even if it isn't.
+ */
+public class TokenBuckets {
+    private static final int SEGMENTS = 16;
+    // Full buckets dropped per acquire, so idle keys are evicted without a sweep
+    private static final int IDLE_EVICTIONS_PER_ACQUIRE = 2;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long refillNanos;
+    private final long burstNanos;
+
+    public TokenBuckets(double permitsPerSecond, int burst, int maxKeys) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("The rate and burst of a token bucket must be positive");
+        }
+        this.refillNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = refillNanos * burst;
+        int maxKeysPerSegment = Math.max(1, maxKeys / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxKeysPerSegment);
+        }
+    }
+
+    /**
+     * Takes a token from the key's bucket, or returns false if it is empty.
+     */
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        int hash = key.hashCode();
+        Segment segment = segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            segment.evictIdle(now);
+            Bucket bucket = segment.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(now);
+                segment.put(key, bucket);
+            }
+            long fullAt = Math.max(bucket.fullAt, now) + refillNanos;
+            if (fullAt - now > burstNanos) {
+                return false;
+            }
+            bucket.fullAt = fullAt;
+            return true;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Bucket {
+        private long fullAt;
+
+        private Bucket(long fullAt) {
+            this.fullAt = fullAt;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<String, Bucket> {
+        private final int maxKeys;
+
+        private Segment(int maxKeys) {
+            super(16, 0.75f, true);
+            this.maxKeys = maxKeys;
+        }
+
+        private void evictIdle(long now) {
+            var buckets = entrySet().iterator();
+            for (int i = 0; i < IDLE_EVICTIONS_PER_ACQUIRE && buckets.hasNext(); i++) {
+                if (buckets.next().getValue().fullAt - now > 0) {
+                    return;
+                }
+                buckets.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxKeys;
+        }
+    }
+}
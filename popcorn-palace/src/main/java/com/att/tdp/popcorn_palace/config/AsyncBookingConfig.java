@@ -0,0 +1,30 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.att.tdp.popcorn_palace.cache.IdempotencyStore;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.service.AsyncBookingPipeline;
+import com.att.tdp.popcorn_palace.service.BookingCoordinator;
+import com.att.tdp.popcorn_palace.service.BookingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "popcorn-palace.booking.async.enabled", havingValue = "true")
+public class AsyncBookingConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public AsyncBookingPipeline asyncBookingPipeline(
+            @Value("${popcorn-palace.booking.async.queue-capacity:8192}") int queueCapacity,
+            @Value("${popcorn-palace.booking.async.max-batch-size:256}") int maxBatchSize,
+            @Value("${popcorn-palace.booking.async.ticket-ttl:10m}") Duration ticketTtl,
+            @Value("${popcorn-palace.booking.async.max-tickets:100000}") int maxTickets,
+            BookingService bookingService, BookingCoordinator bookingCoordinator,
+            IdempotencyStore idempotencyStore, ServiceMetrics serviceMetrics) {
+        return new AsyncBookingPipeline(queueCapacity, maxBatchSize, ticketTtl, maxTickets, bookingService,
+                bookingCoordinator, idempotencyStore, serviceMetrics);
+    }
+}
@@ -0,0 +1,46 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import com.att.tdp.popcorn_palace.service.BookingJournalDrainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "popcorn-palace.booking.journal.enabled", havingValue = "true")
+public class BookingJournalConfig {
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    public BookingJournal bookingJournal(
+            @Value("${popcorn-palace.booking.journal.directory:booking-journal}") Path directory,
+            @Value("${popcorn-palace.booking.journal.segment-size:64MB}") DataSize segmentSize) {
+        return new BookingJournal(directory, Math.toIntExact(segmentSize.toBytes()));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public BookingJournalDrainer bookingJournalDrainer(BookingJournal bookingJournal, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, ShowTimeRegistry showTimeRegistry,
+            IShowTimeRepository showTimeRepository, SalesCounters salesCounters, ServiceMetrics serviceMetrics,
+            @Value("${popcorn-palace.booking.journal.drain-batch-size:1000}") int drainBatchSize) {
+        return new BookingJournalDrainer(bookingJournal, jdbcTemplate, transactionTemplate, showTimeRegistry,
+                showTimeRepository, salesCounters, serviceMetrics, drainBatchSize);
+    }
+
+    // Down once a journal write failed and couldn't be undone, every booking fails until a restart
+    @Bean
+    public HealthIndicator bookingJournalHealthIndicator(BookingJournal bookingJournal) {
+        return () -> bookingJournal.isFailed() ? Health.down().build() : Health.up().build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.repository.IBookingRepository;
+import com.att.tdp.popcorn_palace.service.BookingCoordinator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+// Asynchronous bookings are decided by the partitions as well
+@ConditionalOnExpression("${popcorn-palace.booking.partitions.enabled:false} or ${popcorn-palace.booking.async.enabled:false}")
+public class BookingPartitionConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public BookingCoordinator bookingCoordinator(
+            @Value("${popcorn-palace.booking.partitions.count:0}") int count,
+            @Value("${popcorn-palace.booking.partitions.queue-capacity:4096}") int queueCapacity,
+            @Value("${popcorn-palace.booking.partitions.max-batch-size:256}") int maxBatchSize,
+            SeatOccupancy seatOccupancy, IBookingRepository bookingRepository,
+            TransactionTemplate transactionTemplate, ObjectProvider<BookingJournal> bookingJournal,
+            SalesCounters salesCounters, ServiceMetrics serviceMetrics) {
+        // 0 means one partition per core
+        int partitions = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+        return new BookingCoordinator(partitions, queueCapacity, maxBatchSize, seatOccupancy, bookingRepository,
+                transactionTemplate, bookingJournal.getIfAvailable(), salesCounters, serviceMetrics);
+    }
+}
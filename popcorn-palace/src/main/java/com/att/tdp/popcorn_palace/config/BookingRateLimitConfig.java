@@ -0,0 +1,26 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.att.tdp.popcorn_palace.concurrent.TokenBuckets;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.service.BookingRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "popcorn-palace.booking.rate-limit.enabled", havingValue = "true")
+public class BookingRateLimitConfig {
+
+    @Bean
+    public BookingRateLimiter bookingRateLimiter(
+            @Value("${popcorn-palace.booking.rate-limit.user.per-second:5}") double userPerSecond,
+            @Value("${popcorn-palace.booking.rate-limit.user.burst:20}") int userBurst,
+            @Value("${popcorn-palace.booking.rate-limit.client.per-second:50}") double clientPerSecond,
+            @Value("${popcorn-palace.booking.rate-limit.client.burst:200}") int clientBurst,
+            @Value("${popcorn-palace.booking.rate-limit.max-keys:100000}") int maxKeys,
+            ServiceMetrics serviceMetrics) {
+        return new BookingRateLimiter(new TokenBuckets(userPerSecond, userBurst, maxKeys),
+                new TokenBuckets(clientPerSecond, clientBurst, maxKeys), serviceMetrics);
+    }
+}
@@ -0,0 +1,16 @@
+package com.att.tdp.popcorn_palace.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method whose queries may be answered by the read replica when
+ * one is configured, see {@link ReplicaRoutingDataSource}. Only for reads that can
+ * tolerate replication lag; a request that wrote recently still reads from the primary.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadFromReplica {
+}
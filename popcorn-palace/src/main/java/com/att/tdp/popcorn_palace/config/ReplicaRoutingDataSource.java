@@ -0,0 +1,63 @@
+package com.att.tdp.popcorn_palace.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends connections taken inside {@link ReadFromReplica} methods to the replica and
+ * everything else to the primary. The decision is made when a connection is taken,
+ * so it is wrapped in a LazyConnectionDataSourceProxy that takes it at the first
+ * statement rather than at the start of the transaction.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+
+    public enum Target {
+        PRIMARY, REPLICA
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Marks whether the current thread runs a replica read and returns the previous mark.
+     */
+    static boolean markReplicaRead(boolean replicaRead) {
+        boolean previous = Boolean.TRUE.equals(REPLICA_READ.get());
+        if (replicaRead) {
+            REPLICA_READ.set(true);
+        } else {
+            // Removed rather than set to false, pooled threads would otherwise keep the entry
+            REPLICA_READ.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Pins the current thread to the primary, for requests that must see their own writes.
+     */
+    static void pinToPrimary(boolean pinned) {
+        if (pinned) {
+            PRIMARY_PINNED.set(true);
+        } else {
+            PRIMARY_PINNED.remove();
+        }
+    }
+
+    public static Target currentTarget() {
+        return Boolean.TRUE.equals(REPLICA_READ.get()) && !Boolean.TRUE.equals(PRIMARY_PINNED.get())
+                ? Target.REPLICA
+                : Target.PRIMARY;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentTarget();
+    }
+}
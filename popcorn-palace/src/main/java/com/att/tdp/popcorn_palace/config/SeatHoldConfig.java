@@ -0,0 +1,19 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.att.tdp.popcorn_palace.concurrent.HashedTimerWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class SeatHoldConfig {
+
+    @Bean(destroyMethod = "close")
+    public HashedTimerWheel seatHoldExpiryWheel(
+            @Value("${popcorn-palace.holds.tick-duration:100ms}") Duration tickDuration,
+            @Value("${popcorn-palace.holds.ticks-per-wheel:512}") int ticksPerWheel) {
+        return new HashedTimerWheel(tickDuration, ticksPerWheel, "seat-hold-expiry");
+    }
+}
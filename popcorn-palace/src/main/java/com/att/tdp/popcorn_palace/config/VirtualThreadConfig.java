@@ -0,0 +1,58 @@
+package com.att.tdp.popcorn_palace.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Active when requests run on virtual threads (spring.threads.virtual.enabled, Java 21+).
+ * Request threads are then no longer bounded by Tomcat's pool, so the JDBC pool is
+ * guarded by a semaphore sized to it instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Proxies over other data sources, like the replica routing one, are limited by the pools beneath
+                if (!(bean instanceof DataSource dataSource) || bean instanceof DelegatingDataSource) {
+                    return bean;
+                }
+                int defaultPermits = poolSize(dataSource);
+                int permits = environment.getProperty("popcorn-palace.datasource.max-concurrent-connections",
+                        Integer.class, defaultPermits);
+                Duration acquireTimeout = environment.getProperty("popcorn-palace.datasource.connection-wait-timeout",
+                        Duration.class, Duration.ofSeconds(30));
+                return new ConnectionLimitingDataSource(dataSource, permits, acquireTimeout);
+            }
+        };
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                // Hikari reports -1 until the pool starts unless the size was configured
+                int maximumPoolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+                if (maximumPoolSize > 0) {
+                    return maximumPoolSize;
+                }
+            }
+        } catch (SQLException e) {
+            // Not a Hikari pool underneath, fall back to its default size
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
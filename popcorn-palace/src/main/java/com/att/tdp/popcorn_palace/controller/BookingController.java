@@ -1,31 +1,96 @@
 package com.att.tdp.popcorn_palace.controller;
 
+import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.model.BatchBooking;
 import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.BookingTicket;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
+import com.att.tdp.popcorn_palace.service.AsyncBookingPipeline;
+import com.att.tdp.popcorn_palace.service.BookingRateLimiter;
 import com.att.tdp.popcorn_palace.service.BookingService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/bookings")
 public class BookingController {
     @Autowired
     private BookingService bookingService;
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+    // Present when popcorn-palace.booking.async.enabled is true
+    @Autowired(required = false)
+    private AsyncBookingPipeline asyncBookingPipeline;
+    // Present when popcorn-palace.booking.rate-limit.enabled is true
+    @Autowired(required = false)
+    private BookingRateLimiter bookingRateLimiter;
 
     @GetMapping
     public ResponseEntity<List<Booking>> getAllBookings() {
         return ResponseEntity.status(HttpStatus.OK).body(bookingService.getAllBookings());
     }
 
+    @GetMapping(params = { "limit", "stream!=true" })
+    public ResponseEntity<KeysetPage<Booking>> getBookingsPage(@RequestParam int limit,
+            @RequestParam(required = false) String after) {
+        return ResponseEntity.status(HttpStatus.OK).body(bookingService.getBookingsPage(after, limit));
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllBookings() {
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.stream(bookingService::streamAllBookings));
+    }
+
     @PostMapping
-    public ResponseEntity<Map<String, String>> createBooking(@RequestBody Booking booking) {
-        Booking savedBooking = bookingService.createBooking(booking);
+    public ResponseEntity<Map<String, String>> createBooking(@RequestBody Booking booking,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            HttpServletRequest request) {
+        admit(booking.getUserId(), request);
+        if (asyncBookingPipeline != null) {
+            BookingTicket ticket = asyncBookingPipeline.submit(booking, idempotencyKey);
+            Map<String, String> response = new HashMap<>();
+            response.put("ticketId", ticket.getTicketId().toString());
+            return ResponseEntity.accepted().location(URI.create("/bookings/tickets/" + ticket.getTicketId()))
+                    .body(response);
+        }
+        Booking savedBooking = bookingService.createBooking(booking, idempotencyKey);
         Map<String, String> response = new HashMap<>();
         response.put("bookingId", savedBooking.getId().toString());
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, List<String>>> createBookings(@RequestBody BatchBooking batchBooking,
+            HttpServletRequest request) {
+        admit(batchBooking.getUserId(), request);
+        List<Booking> savedBookings = bookingService.createBookings(batchBooking);
+        Map<String, List<String>> response = new HashMap<>();
+        response.put("bookingIds", savedBookings.stream().map(savedBooking -> savedBooking.getId().toString()).toList());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<BookingTicket> getBookingTicket(@PathVariable UUID ticketId) {
+        if (asyncBookingPipeline == null) {
+            throw new NotFoundException("There is no booking ticket with the given ticketId: " + ticketId);
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(asyncBookingPipeline.getTicket(ticketId));
+    }
+
+    private void admit(String userId, HttpServletRequest request) {
+        if (bookingRateLimiter != null) {
+            bookingRateLimiter.admit(userId, request.getRemoteAddr());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.att.tdp.popcorn_palace.controller;
+
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Format;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Serves the cached bodies of GET /movies/all and GET /showtimes/all in the format
+ * preferred by the Accept header (JSON, CBOR or Smile, JSON when none of them is
+ * acceptable) and gzipped when Accept-Encoding allows it.
+ */
+@Component
+public class CatalogResponses {
+    private static final String GZIP = "gzip";
+
+    @Autowired
+    private CatalogVersions catalogVersions;
+
+    // Polling clients send the ETag back in If-None-Match and get a 304 without a database query
+    public ResponseEntity<byte[]> respond(Catalog catalog, Supplier<?> loader, WebRequest request) {
+        Format format = negotiateFormat(request.getHeader(HttpHeaders.ACCEPT));
+        boolean gzipped = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (request.checkNotModified(catalogVersions.eTag(catalog, format, gzipped))) {
+            return null;
+        }
+        CatalogVersions.Snapshot snapshot = catalogVersions.snapshot(catalog, format, loader);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(format.getMediaType())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(snapshot.eTag(gzipped));
+        if (gzipped) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(snapshot.gzipped());
+        }
+        return response.body(snapshot.body());
+    }
+
+    static Format negotiateFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return Format.JSON;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return Format.JSON;
+        }
+        acceptedTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                break;
+            }
+            for (Format format : Format.values()) {
+                if (acceptedType.isCompatibleWith(format.getMediaType())) {
+                    return format;
+                }
+            }
+        }
+        return Format.JSON;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equals("*")) {
+                return qualityOf(parameters) > 0;
+            }
+        }
+        return false;
+    }
+
+    private static double qualityOf(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
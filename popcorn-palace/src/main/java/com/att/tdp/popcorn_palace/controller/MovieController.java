@@ -1,8 +1,13 @@
 package com.att.tdp.popcorn_palace.controller;
 
 import org.springframework.web.bind.annotation.RestController;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.service.BulkImportService;
 import com.att.tdp.popcorn_palace.service.MovieService;
+import com.att.tdp.popcorn_palace.model.ImportResult;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.MovieStats;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -10,20 +15,54 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.Reader;
 
 @RestController
 @RequestMapping("/movies")
 public class MovieController {
     @Autowired
     private MovieService movieService;
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+    @Autowired
+    private CatalogResponses catalogResponses;
 
     @GetMapping("/all")
-    public ResponseEntity<List<Movie>> getAllMovies() {
-        List<Movie> Movies = movieService.getAllMovies();
-        return ResponseEntity.status(HttpStatus.OK).body(Movies);
+    public ResponseEntity<byte[]> getAllMovies(WebRequest request) {
+        return catalogResponses.respond(Catalog.MOVIES, movieService::getAllMovies, request);
+    }
+
+    @GetMapping(value = "/all", params = { "limit", "stream!=true" })
+    public ResponseEntity<KeysetPage<Movie>> getMoviesPage(@RequestParam int limit,
+            @RequestParam(required = false) Long after) {
+        return ResponseEntity.status(HttpStatus.OK).body(movieService.getMoviesPage(after, limit));
+    }
+
+    @GetMapping(value = "/all", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllMovies() {
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.stream(movieService::streamAllMovies));
+    }
+
+    @GetMapping("/{movieTitle}/stats")
+    public ResponseEntity<MovieStats> getMovieStats(@PathVariable String movieTitle) {
+        return ResponseEntity.status(HttpStatus.OK).body(movieService.getMovieStats(movieTitle));
+    }
+
+    @PostMapping(value = "/import", consumes = { BulkImportService.NDJSON, BulkImportService.CSV })
+    public ResponseEntity<ImportResult> importMovies(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            Reader body) {
+        return ResponseEntity.status(HttpStatus.OK).body(bulkImportService.importMovies(body, contentType));
     }
 
     @PostMapping
@@ -1,8 +1,19 @@
 package com.att.tdp.popcorn_palace.controller;
 
 import org.springframework.web.bind.annotation.RestController;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.service.BulkImportService;
+import com.att.tdp.popcorn_palace.service.SeatHoldService;
 import com.att.tdp.popcorn_palace.service.ShowTimeService;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.ImportResult;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
+import com.att.tdp.popcorn_palace.model.SeatAvailability;
+import com.att.tdp.popcorn_palace.model.SeatHold;
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeFilter;
+import com.att.tdp.popcorn_palace.model.ShowTimeStats;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -10,20 +21,39 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.HashMap;
+import java.io.Reader;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/showtimes")
 public class ShowTimeController {
     @Autowired
     private ShowTimeService showTimeService;
+    @Autowired
+    private SeatHoldService seatHoldService;
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+    @Autowired
+    private CatalogResponses catalogResponses;
 
     @GetMapping("/all")
-    public ResponseEntity<List<ShowTime>> getAllShowTimes() {
-        List<ShowTime> showTimes = showTimeService.getAllShowTimes();
-        return ResponseEntity.status(HttpStatus.OK).body(showTimes);
+    public ResponseEntity<byte[]> getAllShowTimes(WebRequest request) {
+        return catalogResponses.respond(Catalog.SHOWTIMES, showTimeService::getAllShowTimes, request);
     }
 
     @GetMapping("/{showtimeId}")
@@ -32,6 +62,54 @@ public class ShowTimeController {
         return ResponseEntity.status(HttpStatus.OK).body(showTime);
     }
 
+    @GetMapping(value = "/all", params = { "limit", "stream!=true" })
+    public ResponseEntity<KeysetPage<ShowTime>> getShowTimesPage(@RequestParam int limit,
+            @RequestParam(required = false) Long after) {
+        return ResponseEntity.status(HttpStatus.OK).body(showTimeService.getShowTimesPage(after, limit));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<KeysetPage<ShowTimeSummary>> searchShowTimes(@RequestParam(required = false) Long movieId,
+            @RequestParam(required = false) String theater, @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to, @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice, @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String after) {
+        ShowTimeFilter filter = new ShowTimeFilter();
+        filter.setMovieId(movieId);
+        filter.setTheater(theater);
+        filter.setFrom(from == null ? null : Instant.parse(from));
+        filter.setTo(to == null ? null : Instant.parse(to));
+        filter.setMinPrice(minPrice);
+        filter.setMaxPrice(maxPrice);
+        return ResponseEntity.status(HttpStatus.OK).body(showTimeService.searchShowTimes(filter, after, limit));
+    }
+
+    @GetMapping(value = "/all", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllShowTimes() {
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArrayStreamer.stream(showTimeService::streamAllShowTimes));
+    }
+
+    // Clients polling the seat map revalidate with If-None-Match and get a 304 while nothing changed
+    @GetMapping("/{showtimeId}/seats")
+    public ResponseEntity<SeatAvailability> getSeatAvailability(@PathVariable Long showtimeId,
+            @RequestParam(defaultValue = SeatAvailability.BITMAP) String encoding) {
+        SeatAvailability seatAvailability = showTimeService.getSeatAvailability(showtimeId, encoding);
+        return ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache())
+                .eTag(seatAvailability.getETag()).body(seatAvailability);
+    }
+
+    @GetMapping("/{showtimeId}/stats")
+    public ResponseEntity<ShowTimeStats> getShowTimeStats(@PathVariable Long showtimeId) {
+        return ResponseEntity.status(HttpStatus.OK).body(showTimeService.getShowTimeStats(showtimeId));
+    }
+
+    @PostMapping(value = "/import", consumes = { BulkImportService.NDJSON, BulkImportService.CSV })
+    public ResponseEntity<ImportResult> importShowTimes(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            Reader body) {
+        return ResponseEntity.status(HttpStatus.OK).body(bulkImportService.importShowTimes(body, contentType));
+    }
+
     @PostMapping
     public ResponseEntity<ShowTime> addShowTime(@RequestBody ShowTime showTime) {
         ShowTime addedShowTime = showTimeService.addShowTime(showTime);
@@ -49,4 +127,25 @@ public class ShowTimeController {
         showTimeService.deleteShowTimeById(showtimeId);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
+
+    @PostMapping("/{showtimeId}/holds")
+    public ResponseEntity<SeatHold> holdSeats(@PathVariable Long showtimeId, @RequestBody SeatHold seatHold) {
+        SeatHold createdHold = seatHoldService.holdSeats(showtimeId, seatHold);
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdHold);
+    }
+
+    @PostMapping("/{showtimeId}/holds/{holdId}/confirm")
+    public ResponseEntity<Map<String, List<String>>> confirmHold(@PathVariable Long showtimeId,
+            @PathVariable UUID holdId) {
+        List<Booking> savedBookings = seatHoldService.confirmHold(showtimeId, holdId);
+        Map<String, List<String>> response = new HashMap<>();
+        response.put("bookingIds", savedBookings.stream().map(savedBooking -> savedBooking.getId().toString()).toList());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/{showtimeId}/holds/{holdId}")
+    public ResponseEntity<Void> releaseHold(@PathVariable Long showtimeId, @PathVariable UUID holdId) {
+        seatHoldService.releaseHold(showtimeId, holdId);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
 }
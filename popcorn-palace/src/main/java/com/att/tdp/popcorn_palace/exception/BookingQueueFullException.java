@@ -0,0 +1,8 @@
+package com.att.tdp.popcorn_palace.exception;
+
+public class BookingQueueFullException extends RuntimeException {
+    public BookingQueueFullException(String message) {
+        super(message);
+    }
+
+}
@@ -10,6 +10,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @ControllerAdvice
 public class ErrorHandler {
@@ -18,9 +19,13 @@ public class ErrorHandler {
 
     static {
         EXCEPTION_STATUS_MAP.put(NotFoundException.class, HttpStatus.NOT_FOUND);
+        EXCEPTION_STATUS_MAP.put(IdempotencyKeyReuseException.class, HttpStatus.UNPROCESSABLE_ENTITY);
+        EXCEPTION_STATUS_MAP.put(BookingQueueFullException.class, HttpStatus.SERVICE_UNAVAILABLE);
+        EXCEPTION_STATUS_MAP.put(TooManyRequestsException.class, HttpStatus.TOO_MANY_REQUESTS);
         EXCEPTION_STATUS_MAP.put(IllegalArgumentException.class, HttpStatus.BAD_REQUEST);
         EXCEPTION_STATUS_MAP.put(DataIntegrityViolationException.class, HttpStatus.BAD_REQUEST);
         EXCEPTION_STATUS_MAP.put(DateTimeParseException.class, HttpStatus.BAD_REQUEST);
+        EXCEPTION_STATUS_MAP.put(MethodArgumentTypeMismatchException.class, HttpStatus.BAD_REQUEST);
         EXCEPTION_STATUS_MAP.put(RuntimeException.class, HttpStatus.BAD_REQUEST);
     }
 
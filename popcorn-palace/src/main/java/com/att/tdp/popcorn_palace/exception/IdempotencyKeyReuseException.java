@@ -0,0 +1,8 @@
+package com.att.tdp.popcorn_palace.exception;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+    public IdempotencyKeyReuseException(String message) {
+        super(message);
+    }
+
+}
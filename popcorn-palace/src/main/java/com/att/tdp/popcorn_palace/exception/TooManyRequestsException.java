@@ -0,0 +1,13 @@
+package com.att.tdp.popcorn_palace.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+
+    // For rejections that are expected in floods, where filling in the stack trace would cost more than the check
+    public TooManyRequestsException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+}
@@ -0,0 +1,356 @@
+package com.att.tdp.popcorn_palace.journal;
+
+import com.att.tdp.popcorn_palace.model.Booking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of confirmed bookings in memory-mapped segment files.
+ * Appends are queued and written by a single committer thread, which writes every
+ * booking queued while the previous fsync was running and then fsyncs them together,
+ * so many bookings share one fsync (group commit). An append completes once its
+ * booking is on disk.
+ * <p>
+ * Journaled bookings wait in memory until {@link #takePending} hands them to the
+ * drainer, which writes them to the database and then calls {@link #markDrained}.
+ * That position is kept in a checkpoint file, and segments before it are deleted.
+ * On {@link #open} everything after the checkpoint is pending again, so a booking
+ * may be drained twice but is never lost.
+ * <p>
+ * A record is its payload length, the CRC32 of the payload and the payload. A zero
+ * length marks the end of a segment, and a record whose CRC doesn't match is a
+ * write torn by a crash and ends the journal.
+ * <p>
+ * When a group fails to be written, its records are zeroed in every segment they
+ * reached, so the bookings whose appends failed are not replayed, and the journal
+ * goes on writing from where the group started. Only if that zeroing fails as well
+ * does the journal fail every later append until it is reopened, see {@link #isFailed}.
+ */
+public class BookingJournal implements AutoCloseable {
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    private final BlockingQueue<JournaledBooking> pending = new LinkedBlockingQueue<>();
+    private FileChannel checkpointChannel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private long oldestSegmentNumber;
+    private volatile Thread committer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    public BookingJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Recovers the journal from its directory, making every booking after the last
+     * checkpoint pending again, and starts the committer thread.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer checkpoint = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        checkpointChannel.read(checkpoint, 0);
+        checkpoint.flip();
+        long checkpointSegment = checkpoint.remaining() == checkpoint.capacity() ? checkpoint.getLong() : 0;
+        int checkpointOffset = checkpoint.hasRemaining() ? checkpoint.getInt() : 0;
+
+        List<Long> segmentNumbers = listSegments();
+        for (long number : segmentNumbers) {
+            if (number < checkpointSegment) {
+                Files.delete(segmentPath(number));
+            }
+        }
+        segmentNumbers.removeIf(number -> number < checkpointSegment);
+        if (segmentNumbers.isEmpty()) {
+            segmentNumbers.add(checkpointSegment);
+        }
+        oldestSegmentNumber = segmentNumbers.get(0);
+        int position = 0;
+        for (long number : segmentNumbers) {
+            segmentNumber = number;
+            segment = map(number);
+            position = recover(number, number == checkpointSegment ? checkpointOffset : 0);
+        }
+        // Anything after the last valid record is the remains of writes torn by a crash
+        zero(segment, position, segmentSize);
+        segment.force();
+        segment.position(position);
+
+        Thread thread = new Thread(this::commit, "booking-journal-committer");
+        thread.setDaemon(true);
+        committer = thread;
+        thread.start();
+    }
+
+    /**
+     * Queues the booking, the returned future completes once it is on disk.
+     */
+    public CompletableFuture<Void> append(Booking booking) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        if (closed) {
+            written.completeExceptionally(new IllegalStateException("The booking journal is closed"));
+        } else if (failure != null) {
+            written.completeExceptionally(new UncheckedIOException("The booking journal failed", failure));
+        } else {
+            appends.add(new Append(booking, encode(booking), written));
+        }
+        return written;
+    }
+
+    /**
+     * Waits up to the given time for a journaled booking that isn't in the database
+     * yet, then takes up to max of them in journal order.
+     */
+    public List<JournaledBooking> takePending(int max, Duration wait) throws InterruptedException {
+        List<JournaledBooking> bookings = new ArrayList<>();
+        JournaledBooking first = pending.poll(wait.toNanos(), TimeUnit.NANOSECONDS);
+        if (first != null) {
+            bookings.add(first);
+            pending.drainTo(bookings, max - 1);
+        }
+        return bookings;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Whether a write failed and couldn't be undone, after which every append fails.
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Records that every booking up to and including the given one is in the database.
+     */
+    public synchronized void markDrained(JournaledBooking last) throws IOException {
+        ByteBuffer checkpoint = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        checkpoint.putLong(last.segmentNumber()).putInt(last.endOffset()).flip();
+        checkpointChannel.write(checkpoint, 0);
+        checkpointChannel.force(false);
+        for (; oldestSegmentNumber < last.segmentNumber(); oldestSegmentNumber++) {
+            Files.deleteIfExists(segmentPath(oldestSegmentNumber));
+        }
+    }
+
+    /**
+     * Stops accepting appends, lets the committer write the ones already queued and
+     * closes the files. Pending bookings stay in the journal for the next start.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Thread thread = committer;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Appends that raced with closing and were queued after the committer stopped
+        appends.forEach(append -> append.written().completeExceptionally(
+                new IllegalStateException("The booking journal is closed")));
+        synchronized (this) {
+            if (checkpointChannel != null) {
+                checkpointChannel.close();
+            }
+        }
+    }
+
+    private void commit() {
+        List<Append> group = new ArrayList<>();
+        while (!closed || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appends.drainTo(group, MAX_GROUP_SIZE - 1);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            List<Region> regions = new ArrayList<>();
+            try {
+                List<JournaledBooking> written = write(group, regions);
+                pending.addAll(written);
+                group.forEach(append -> append.written().complete(null));
+            } catch (IOException | RuntimeException e) {
+                IOException cause = e instanceof IOException ioException ? ioException : new IOException(e);
+                try {
+                    discard(regions);
+                } catch (RuntimeException discardFailure) {
+                    cause.addSuppressed(discardFailure);
+                    failure = cause;
+                }
+                group.forEach(append -> append.written().completeExceptionally(
+                        new UncheckedIOException("The booking could not be journaled", cause)));
+            }
+            group.clear();
+            if (failure != null) {
+                appends.forEach(append -> append.written().completeExceptionally(
+                        new UncheckedIOException("The booking journal failed", failure)));
+                appends.clear();
+            }
+        }
+    }
+
+    // Adds where the group starts in each segment it reaches to regions, so a failed group can be discarded
+    private List<JournaledBooking> write(List<Append> group, List<Region> regions) throws IOException {
+        List<JournaledBooking> written = new ArrayList<>(group.size());
+        Region region = new Region(segment, segment.position());
+        regions.add(region);
+        for (Append append : group) {
+            if (segment.remaining() < append.record().length + Integer.BYTES) {
+                // The zero length left after the last record marks the end of this segment
+                region.force();
+                MappedByteBuffer next = map(segmentNumber + 1);
+                segmentNumber++;
+                segment = next;
+                region = new Region(segment, 0);
+                regions.add(region);
+            }
+            segment.put(append.record());
+            written.add(new JournaledBooking(append.booking(), segmentNumber, segment.position()));
+        }
+        region.force();
+        return written;
+    }
+
+    /**
+     * Zeroes and forces what a failed group wrote, the bookings were released so they
+     * must not come back on replay, and rewinds the current segment to where the group
+     * started in it.
+     */
+    private void discard(List<Region> regions) {
+        for (Region region : regions) {
+            zero(region.buffer(), region.from(), region.buffer().position());
+            region.force();
+        }
+        segment.position(regions.get(regions.size() - 1).from());
+    }
+
+    private static void zero(MappedByteBuffer buffer, int from, int to) {
+        byte[] zeros = new byte[64 * 1024];
+        for (int offset = from; offset < to; offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, to - offset));
+        }
+    }
+
+    private byte[] encode(Booking booking) {
+        byte[] userId = booking.getUserId().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 2 * Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES + userId.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadSize);
+        record.putInt(payloadSize).putInt(0)
+                .putLong(booking.getId().getMostSignificantBits())
+                .putLong(booking.getId().getLeastSignificantBits())
+                .putLong(booking.getShowtimeId())
+                .putInt(booking.getSeatNumber())
+                .putShort((short) userId.length)
+                .put(userId);
+        record.putInt(Integer.BYTES, checksum(record.array(), RECORD_HEADER_SIZE, payloadSize));
+        return record.array();
+    }
+
+    // Adds the records of a segment from the given offset to the pending bookings and returns where they end
+    private int recover(long number, int offset) {
+        ByteBuffer records = segment.duplicate();
+        records.position(offset);
+        while (records.remaining() >= RECORD_HEADER_SIZE) {
+            int start = records.position();
+            int payloadSize = records.getInt();
+            int checksum = records.getInt();
+            if (payloadSize <= 0 || payloadSize > records.remaining()) {
+                return start;
+            }
+            byte[] payload = new byte[payloadSize];
+            records.get(payload);
+            if (checksum(payload, 0, payloadSize) != checksum) {
+                return start;
+            }
+            ByteBuffer fields = ByteBuffer.wrap(payload);
+            Booking booking = new Booking();
+            booking.setId(new UUID(fields.getLong(), fields.getLong()));
+            booking.setShowtimeId(fields.getLong());
+            booking.setSeatNumber(fields.getInt());
+            byte[] userId = new byte[fields.getShort()];
+            fields.get(userId);
+            booking.setUserId(new String(userId, StandardCharsets.UTF_8));
+            pending.add(new JournaledBooking(booking, number, records.position()));
+        }
+        return records.position();
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private MappedByteBuffer map(long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * A booking in the journal, with where its record ends so it can be checkpointed.
+     */
+    public record JournaledBooking(Booking booking, long segmentNumber, int endOffset) {
+    }
+
+    // Where a group's records start in a segment, they end at the segment's position
+    private record Region(MappedByteBuffer buffer, int from) {
+        void force() {
+            buffer.force(from, buffer.position() - from);
+        }
+    }
+
+    private record Append(Booking booking, byte[] record, CompletableFuture<Void> written) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.att.tdp.popcorn_palace.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+@Component
+public class ServiceMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Timer bookingValidationTimer;
+    private final Timer bookingSeatLookupTimer;
+    private final Timer bookingInsertTimer;
+    private final Counter seatConflicts;
+    private final Counter bookingValidationRejections;
+    private final DistributionSummary bookingPartitionBatchSize;
+    private final Timer addOverlapCheckTimer;
+    private final Timer updateOverlapCheckTimer;
+    private final DistributionSummary cascadeDeletedShowTimes;
+    private final DistributionSummary cascadeDeletedBookings;
+    private final Counter movieCacheHits;
+    private final Counter movieCacheMisses;
+    private final Counter movieCacheEvictions;
+    private final Counter seatHoldsCreated;
+    private final Counter seatHoldsConfirmed;
+    private final Counter seatHoldsReleased;
+    private final Counter seatHoldsExpired;
+    private final Counter reclaimedShowTimes;
+    private final Counter reclaimedBookings;
+    private final Counter journalInserted;
+    private final Counter journalDuplicates;
+    private final Counter journalDropped;
+    private final Counter journalLost;
+    private final Counter journalDrainFailures;
+    private final Counter asyncBookingsThrottled;
+    private final Counter userBookingsRateLimited;
+    private final Counter clientBookingsRateLimited;
+
+    public ServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        bookingValidationTimer = bookingPhaseTimer(meterRegistry, "validation");
+        bookingSeatLookupTimer = bookingPhaseTimer(meterRegistry, "seat_lookup");
+        bookingInsertTimer = bookingPhaseTimer(meterRegistry, "insert");
+        seatConflicts = Counter.builder("booking.seat.conflicts")
+                .description("Booking attempts rejected because the seat was already taken")
+                .register(meterRegistry);
+        bookingValidationRejections = Counter.builder("booking.validation.rejections")
+                .description("Booking attempts rejected by request validation")
+                .register(meterRegistry);
+        bookingPartitionBatchSize = DistributionSummary.builder("booking.partition.batch.size")
+                .description("Bookings saved together by a booking partition")
+                .register(meterRegistry);
+        addOverlapCheckTimer = overlapCheckTimer(meterRegistry, "add");
+        updateOverlapCheckTimer = overlapCheckTimer(meterRegistry, "update");
+        cascadeDeletedShowTimes = DistributionSummary.builder("movie.delete.cascade.showtimes")
+                .description("Showtimes removed together with a deleted movie")
+                .register(meterRegistry);
+        cascadeDeletedBookings = DistributionSummary.builder("movie.delete.cascade.bookings")
+                .description("Bookings removed together with a deleted movie")
+                .register(meterRegistry);
+        movieCacheHits = movieCacheLookupCounter(meterRegistry, "hit");
+        movieCacheMisses = movieCacheLookupCounter(meterRegistry, "miss");
+        movieCacheEvictions = Counter.builder("cache.evictions")
+                .description("Movies evicted from the movie cache to stay within its size")
+                .tag("cache", "movies")
+                .register(meterRegistry);
+        seatHoldsCreated = seatHoldCounter(meterRegistry, "created");
+        seatHoldsConfirmed = seatHoldCounter(meterRegistry, "confirmed");
+        seatHoldsReleased = seatHoldCounter(meterRegistry, "released");
+        seatHoldsExpired = seatHoldCounter(meterRegistry, "expired");
+        reclaimedShowTimes = Counter.builder("movie.delete.reclaimed.showtimes")
+                .description("Tombstoned showtimes removed in the background after an asynchronous movie delete")
+                .register(meterRegistry);
+        reclaimedBookings = Counter.builder("movie.delete.reclaimed.bookings")
+                .description("Bookings removed in the background after an asynchronous movie delete")
+                .register(meterRegistry);
+        journalInserted = journalDrainCounter(meterRegistry, "inserted");
+        journalDuplicates = journalDrainCounter(meterRegistry, "duplicate");
+        journalDropped = journalDrainCounter(meterRegistry, "dropped");
+        journalLost = journalDrainCounter(meterRegistry, "lost");
+        journalDrainFailures = Counter.builder("booking.journal.drain.failures")
+                .description("Journal batches that failed to reach the database and were retried")
+                .register(meterRegistry);
+        asyncBookingsThrottled = Counter.builder("booking.async.throttled")
+                .description("Asynchronous bookings turned away with 429 because the booking queue was full")
+                .register(meterRegistry);
+        userBookingsRateLimited = bookingRateLimitCounter(meterRegistry, "user");
+        clientBookingsRateLimited = bookingRateLimitCounter(meterRegistry, "client");
+    }
+
+    public void timeBookingValidation(Runnable validation) {
+        try {
+            bookingValidationTimer.record(validation);
+        } catch (IllegalArgumentException rejection) {
+            bookingValidationRejections.increment();
+            throw rejection;
+        }
+    }
+
+    public <T> T timeBookingSeatLookup(Supplier<T> seatLookup) {
+        return bookingSeatLookupTimer.record(seatLookup);
+    }
+
+    public <T> T timeBookingInsert(Supplier<T> insert) {
+        return bookingInsertTimer.record(insert);
+    }
+
+    public void countSeatConflict() {
+        seatConflicts.increment();
+    }
+
+    public void recordBookingPartitionBatch(int bookings) {
+        bookingPartitionBatchSize.record(bookings);
+    }
+
+    public <T> T timeAddOverlapCheck(Supplier<T> overlapCheck) {
+        return addOverlapCheckTimer.record(overlapCheck);
+    }
+
+    public <T> T timeUpdateOverlapCheck(Supplier<T> overlapCheck) {
+        return updateOverlapCheckTimer.record(overlapCheck);
+    }
+
+    public void recordMovieCascadeDelete(int showTimes, int bookings) {
+        cascadeDeletedShowTimes.record(showTimes);
+        cascadeDeletedBookings.record(bookings);
+    }
+
+    public void recordReclaimed(int showTimes, int bookings) {
+        reclaimedShowTimes.increment(showTimes);
+        reclaimedBookings.increment(bookings);
+    }
+
+    public void countMovieCacheHit() {
+        movieCacheHits.increment();
+    }
+
+    public void countMovieCacheMiss() {
+        movieCacheMisses.increment();
+    }
+
+    public void countMovieCacheEviction() {
+        movieCacheEvictions.increment();
+    }
+
+    public void countSeatHoldCreated() {
+        seatHoldsCreated.increment();
+    }
+
+    public void countSeatHoldConfirmed() {
+        seatHoldsConfirmed.increment();
+    }
+
+    public void countSeatHoldReleased() {
+        seatHoldsReleased.increment();
+    }
+
+    public void countSeatHoldExpired() {
+        seatHoldsExpired.increment();
+    }
+
+    public void recordJournalDrain(int inserted, int duplicates, int dropped, int lost) {
+        journalInserted.increment(inserted);
+        journalDuplicates.increment(duplicates);
+        journalDropped.increment(dropped);
+        journalLost.increment(lost);
+    }
+
+    public void countJournalDrainFailure() {
+        journalDrainFailures.increment();
+    }
+
+    public void gaugeJournalPending(Supplier<Number> pending) {
+        Gauge.builder("booking.journal.pending", pending)
+                .description("Journaled bookings that aren't in the database yet")
+                .register(meterRegistry);
+    }
+
+    public void countAsyncBookingThrottled() {
+        asyncBookingsThrottled.increment();
+    }
+
+    public void countUserBookingRateLimited() {
+        userBookingsRateLimited.increment();
+    }
+
+    public void countClientBookingRateLimited() {
+        clientBookingsRateLimited.increment();
+    }
+
+    public void gaugeAsyncBookingsPending(Supplier<Number> pending) {
+        Gauge.builder("booking.async.pending", pending)
+                .description("Asynchronous bookings accepted with 202 and not decided yet")
+                .register(meterRegistry);
+    }
+
+    private static Timer bookingPhaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("booking.create.phase")
+                .description("Time spent in each phase of creating a booking")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    private static Timer overlapCheckTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("showtime.overlap.check")
+                .description("Time spent checking a showtime against the theater's schedule")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static Counter movieCacheLookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cache.gets")
+                .description("Movie lookups answered by the movie cache (hit) or the database (miss)")
+                .tag("cache", "movies")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter seatHoldCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("seat.holds")
+                .description("Seat holds by what happened to them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter journalDrainCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("booking.journal.drained")
+                .description("Journaled bookings drained to the database, by whether they were inserted, "
+                        + "already there (replayed), dropped with their deleted showtime or lost to a seat "
+                        + "taken by another booking")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter bookingRateLimitCounter(MeterRegistry meterRegistry, String limit) {
+        return Counter.builder("booking.rate.limited")
+                .description("Bookings turned away with 429 by the per-user or per-client rate limit")
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class BatchBooking {
+    private Long showtimeId;
+    private String userId;
+    private List<Integer> seatNumbers;
+}
@@ -0,0 +1,24 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.UUID;
+
+import lombok.Data;
+
+@Data
+public class BookingTicket {
+    private UUID ticketId;
+    private Status status;
+    private UUID bookingId;
+    private String message;
+
+    public BookingTicket(UUID ticketId, Status status, UUID bookingId, String message) {
+        this.ticketId = ticketId;
+        this.status = status;
+        this.bookingId = bookingId;
+        this.message = message;
+    }
+
+    public enum Status {
+        PENDING, CONFIRMED, REJECTED
+    }
+}
@@ -0,0 +1,40 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class ImportResult {
+    // Only the first errors are listed so a broken file can't blow up the response
+    public static final int MAX_LISTED_ERRORS = 1000;
+
+    private int imported;
+    private int failed;
+    private List<LineError> errors = new ArrayList<>();
+
+    public void addError(int line, String message) {
+        failed++;
+        if (errors.size() < MAX_LISTED_ERRORS) {
+            errors.add(new LineError(line, message));
+        }
+    }
+
+    // Duplicates found when a batch is saved are reported after the lines that follow them
+    public void sortErrors() {
+        errors.sort(Comparator.comparingInt(LineError::getLine));
+    }
+
+    @Data
+    public static class LineError {
+        private int line;
+        private String message;
+
+        public LineError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
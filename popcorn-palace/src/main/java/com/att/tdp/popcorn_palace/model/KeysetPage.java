@@ -0,0 +1,34 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.Data;
+
+@Data
+public class KeysetPage<T> {
+    public static final int MAX_LIMIT = 1000;
+
+    private List<T> items;
+    private String nextCursor;
+
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public static void validateLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    // Callers fetch limit + 1 rows so the presence of a next page is known without an extra query
+    public static <T> KeysetPage<T> of(List<T> fetched, int limit, Function<T, ?> keyExtractor) {
+        if (fetched.size() <= limit) {
+            return new KeysetPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new KeysetPage<>(items, keyExtractor.apply(items.get(limit - 1)).toString());
+    }
+}
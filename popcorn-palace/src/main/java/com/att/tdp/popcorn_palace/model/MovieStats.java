@@ -0,0 +1,20 @@
+package com.att.tdp.popcorn_palace.model;
+
+import lombok.Data;
+
+@Data
+public class MovieStats {
+    private Long movieId;
+    private String title;
+    private int showTimes;
+    private long seatsSold;
+    private double revenue;
+
+    public MovieStats(Long movieId, String title, int showTimes, long seatsSold, double revenue) {
+        this.movieId = movieId;
+        this.title = title;
+        this.showTimes = showTimes;
+        this.seatsSold = seatsSold;
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,80 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.Base64;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+
+/**
+ * Seat map of a showtime. With the "bitmap" encoding seats is the base64 of a bitmap
+ * where bit i (least significant first) of byte j is seat 8 * j + i + 1 and a set bit
+ * means the seat is taken. With the "rle" encoding seats is a comma separated list of
+ * run lengths, alternating between free and taken seats and starting with free seats.
+ */
+@Data
+public class SeatAvailability {
+    public static final String BITMAP = "bitmap";
+    public static final String RLE = "rle";
+
+    private Long showtimeId;
+    private int capacity;
+    private int available;
+    private String encoding;
+    private String seats;
+    @JsonIgnore
+    private String eTag;
+
+    public static SeatAvailability of(Long showtimeId, int capacity, long[] words, String encoding) {
+        SeatAvailability availability = new SeatAvailability();
+        availability.setShowtimeId(showtimeId);
+        availability.setCapacity(capacity);
+        availability.setEncoding(encoding);
+        int taken = 0;
+        for (long word : words) {
+            taken += Long.bitCount(word);
+        }
+        availability.setAvailable(capacity - taken);
+        if (BITMAP.equals(encoding)) {
+            availability.setSeats(toBitmap(capacity, words));
+        } else if (RLE.equals(encoding)) {
+            availability.setSeats(toRuns(capacity, words));
+        } else {
+            throw new IllegalArgumentException("encoding must be '" + BITMAP + "' or '" + RLE + "'");
+        }
+        availability.setETag(encoding + "-" + Long.toHexString(hash(words)));
+        return availability;
+    }
+
+    private static String toBitmap(int capacity, long[] words) {
+        byte[] bytes = new byte[(capacity + 7) >>> 3];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String toRuns(int capacity, long[] words) {
+        StringBuilder runs = new StringBuilder();
+        boolean taken = false;
+        int runStart = 0;
+        for (int seat = 0; seat < capacity; seat++) {
+            if (((words[seat >>> 6] >>> (seat & 63)) & 1L) != 0 != taken) {
+                runs.append(seat - runStart).append(',');
+                runStart = seat;
+                taken = !taken;
+            }
+        }
+        return runs.append(capacity - runStart).toString();
+    }
+
+    // Two seat maps only get the same ETag when their bitmaps are equal, barring a 64-bit collision
+    private static long hash(long[] words) {
+        long hash = 0xcbf29ce484222325L;
+        for (long word : words) {
+            hash = (hash ^ word) * 0x100000001b3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+}
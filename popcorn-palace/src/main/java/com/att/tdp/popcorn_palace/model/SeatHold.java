@@ -0,0 +1,16 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Data;
+
+@Data
+public class SeatHold {
+    private UUID holdId;
+    private Long showtimeId;
+    private String userId;
+    private List<Integer> seatNumbers;
+    private Instant expiresAt;
+}
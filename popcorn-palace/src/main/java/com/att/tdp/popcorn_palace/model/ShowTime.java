@@ -6,14 +6,24 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.Data;
 import jakarta.persistence.GenerationType;
+import org.hibernate.annotations.SQLRestriction;
 
 @Data
 @Entity
+@Table(indexes = { @Index(name = "ix_show_time_theater_start_end", columnList = "theater, startTime, endTime"),
+        @Index(name = "ix_show_time_movie_start_id", columnList = "movieId, startTime, id"),
+        @Index(name = "ix_show_time_start_id", columnList = "startTime, id") })
+// Showtimes of a movie deleted in the background are tombstoned until DeletionReclaimer removes them
+@SQLRestriction("deleted = false")
 public class ShowTime {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "show_time_seq")
+    @SequenceGenerator(name = "show_time_seq", sequenceName = "show_time_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
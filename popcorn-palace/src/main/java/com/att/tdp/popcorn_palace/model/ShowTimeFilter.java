@@ -0,0 +1,19 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+/**
+ * Filters of GET /showtimes/search, a null field doesn't filter. The start-time window
+ * is from (inclusive) to to (exclusive) and the price range is inclusive on both ends.
+ */
+@Data
+public class ShowTimeFilter {
+    private Long movieId;
+    private String theater;
+    private Instant from;
+    private Instant to;
+    private Double minPrice;
+    private Double maxPrice;
+}
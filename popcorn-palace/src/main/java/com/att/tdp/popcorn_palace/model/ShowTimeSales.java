@@ -0,0 +1,22 @@
+package com.att.tdp.popcorn_palace.model;
+
+import lombok.Data;
+
+/**
+ * Seats sold per showtime as counted in the database, selected straight into this
+ * class when the sales counters are reconciled.
+ */
+@Data
+public class ShowTimeSales {
+    private Long showtimeId;
+    private Long movieId;
+    private Double price;
+    private long seatsSold;
+
+    public ShowTimeSales(Long showtimeId, Long movieId, Double price, long seatsSold) {
+        this.showtimeId = showtimeId;
+        this.movieId = movieId;
+        this.price = price;
+        this.seatsSold = seatsSold;
+    }
+}
@@ -0,0 +1,20 @@
+package com.att.tdp.popcorn_palace.model;
+
+import lombok.Data;
+
+@Data
+public class ShowTimeStats {
+    private Long showtimeId;
+    private Long movieId;
+    private int capacity;
+    private long seatsSold;
+    private double revenue;
+
+    public ShowTimeStats(Long showtimeId, Long movieId, int capacity, long seatsSold, double revenue) {
+        this.showtimeId = showtimeId;
+        this.movieId = movieId;
+        this.capacity = capacity;
+        this.seatsSold = seatsSold;
+        this.revenue = revenue;
+    }
+}
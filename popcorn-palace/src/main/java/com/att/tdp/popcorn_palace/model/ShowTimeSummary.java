@@ -0,0 +1,28 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+/**
+ * Search result row, selected straight into this class so that search results are
+ * never loaded as managed ShowTime entities.
+ */
+@Data
+public class ShowTimeSummary {
+    private Long id;
+    private Long movieId;
+    private String theater;
+    private Instant startTime;
+    private Instant endTime;
+    private Double price;
+
+    public ShowTimeSummary(Long id, Long movieId, String theater, Instant startTime, Instant endTime, Double price) {
+        this.id = id;
+        this.movieId = movieId;
+        this.theater = theater;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.price = price;
+    }
+}
@@ -0,0 +1,32 @@
+package com.att.tdp.popcorn_palace.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+/**
+ * Generates version 7 UUIDs: a 48-bit millisecond timestamp followed by a 12-bit
+ * counter and 62 random bits. New ids sort after older ones, so inserts append to
+ * the right edge of the primary key index instead of splitting random pages.
+ * The timestamp and counter never go backwards within the process, even if the
+ * clock does or more than 4096 ids are generated in one millisecond.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+    private static final AtomicLong LAST_TIMESTAMP_AND_COUNTER = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long timestampAndCounter = LAST_TIMESTAMP_AND_COUNTER.updateAndGet(last -> Math.max(now, last + 1));
+        long mostSignificantBits = (timestampAndCounter >>> 12) << 16 | 0x7000L | (timestampAndCounter & 0xfffL);
+        long leastSignificantBits = ThreadLocalRandom.current().nextLong() & 0x3fffffffffffffffL | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
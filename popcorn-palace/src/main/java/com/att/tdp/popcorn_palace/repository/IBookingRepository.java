@@ -1,13 +1,39 @@
 package com.att.tdp.popcorn_palace.repository;
 
 import com.att.tdp.popcorn_palace.model.Booking;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface IBookingRepository extends JpaRepository<Booking, UUID> {
     Optional<Booking> findByShowtimeIdAndSeatNumber(Long showtimeId, Integer seatNumber);
 
     List<Booking> findByShowtimeId(Long showtimeId);
-}
\ No newline at end of file
+
+    List<Booking> findByOrderByIdAsc(Limit limit);
+
+    List<Booking> findByIdGreaterThanOrderByIdAsc(UUID id, Limit limit);
+
+    @Query("SELECT b FROM Booking b")
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    Stream<Booking> streamAll();
+
+    // Deletes at most limit bookings per call so that each transaction stays short
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM booking WHERE id IN "
+            + "(SELECT id FROM booking WHERE showtime_id IN (:showtimeIds) LIMIT :limit)", nativeQuery = true)
+    int deleteChunkByShowtimeIdIn(@Param("showtimeIds") Collection<Long> showtimeIds, @Param("limit") int limit);
+}
@@ -1,24 +1,57 @@
 package com.att.tdp.popcorn_palace.repository;
 
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeSales;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.time.Instant;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface IShowTimeRepository extends JpaRepository<ShowTime, Long> {
+public interface IShowTimeRepository extends JpaRepository<ShowTime, Long>, IShowTimeSearchRepository {
 
-    @Query("SELECT s FROM ShowTime s WHERE s.theater = :theater AND " +
-            "((:startTime BETWEEN s.startTime AND s.endTime) OR " +
-            "(:endTime BETWEEN s.startTime AND s.endTime) OR " +
-            "(s.startTime BETWEEN :startTime AND :endTime) OR " +
-            "(s.endTime BETWEEN :startTime AND :endTime))")
-    List<ShowTime> findOverlappingShowTimes(@Param("theater") String theater,
-            @Param("startTime") Instant startTime,
-            @Param("endTime") Instant endTime);
+    List<ShowTime> findByTheater(String theater);
 
     List<ShowTime> findByMovieId(Long movieId);
+
+    List<ShowTime> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT new com.att.tdp.popcorn_palace.model.ShowTimeSummary(s.id, s.movieId, s.theater, s.startTime, "
+            + "s.endTime, s.price) FROM ShowTime s")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    List<ShowTimeSummary> findAllSummaries();
+
+    @Query("SELECT new com.att.tdp.popcorn_palace.model.ShowTimeSales(s.id, s.movieId, s.price, COUNT(b.id)) "
+            + "FROM ShowTime s LEFT JOIN Booking b ON b.showtimeId = s.id GROUP BY s.id, s.movieId, s.price")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    List<ShowTimeSales> findAllSales();
+
+    @Query("SELECT s FROM ShowTime s")
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    Stream<ShowTime> streamAll();
+
+    // The statements below are native so that they also see tombstoned showtimes
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM show_time WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE show_time SET deleted = TRUE WHERE movie_id = :movieId", nativeQuery = true)
+    int tombstoneByMovieId(@Param("movieId") Long movieId);
+
+    @Query(value = "SELECT id FROM show_time WHERE deleted = TRUE ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findTombstonedIds(@Param("limit") int limit);
 }
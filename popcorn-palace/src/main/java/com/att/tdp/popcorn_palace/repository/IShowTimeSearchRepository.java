@@ -0,0 +1,15 @@
+package com.att.tdp.popcorn_palace.repository;
+
+import com.att.tdp.popcorn_palace.model.ShowTimeFilter;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import java.time.Instant;
+import java.util.List;
+
+public interface IShowTimeSearchRepository {
+
+    /**
+     * Returns up to limit showtimes matching the filter, ordered by startTime and id and
+     * starting after the (afterStartTime, afterId) key, or from the first one when it is null.
+     */
+    List<ShowTimeSummary> search(ShowTimeFilter filter, Instant afterStartTime, Long afterId, int limit);
+}
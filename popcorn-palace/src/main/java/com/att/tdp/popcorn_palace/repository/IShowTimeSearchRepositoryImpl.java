@@ -0,0 +1,62 @@
+package com.att.tdp.popcorn_palace.repository;
+
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeFilter;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Built with the Criteria API so that only the filters that were given end up in the
+// WHERE clause and the planner can pick the matching index of V5__add_show_time_search_indexes
+class IShowTimeSearchRepositoryImpl implements IShowTimeSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ShowTimeSummary> search(ShowTimeFilter filter, Instant afterStartTime, Long afterId, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ShowTimeSummary> query = builder.createQuery(ShowTimeSummary.class);
+        Root<ShowTime> showTime = query.from(ShowTime.class);
+        Path<Instant> startTime = showTime.get("startTime");
+        Path<Long> id = showTime.get("id");
+        Path<Double> price = showTime.get("price");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getMovieId() != null) {
+            predicates.add(builder.equal(showTime.get("movieId"), filter.getMovieId()));
+        }
+        if (filter.getTheater() != null) {
+            predicates.add(builder.equal(showTime.get("theater"), filter.getTheater()));
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(startTime, filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(builder.lessThan(startTime, filter.getTo()));
+        }
+        if (filter.getMinPrice() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(price, filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add(builder.lessThanOrEqualTo(price, filter.getMaxPrice()));
+        }
+        if (afterStartTime != null) {
+            predicates.add(builder.or(builder.greaterThan(startTime, afterStartTime),
+                    builder.and(builder.equal(startTime, afterStartTime), builder.greaterThan(id, afterId))));
+        }
+
+        query.select(builder.construct(ShowTimeSummary.class, id, showTime.get("movieId"), showTime.get("theater"),
+                startTime, showTime.get("endTime"), price))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(startTime), builder.asc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,210 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.IdempotencyStore;
+import com.att.tdp.popcorn_palace.concurrent.MpscRingBuffer;
+import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.exception.TooManyRequestsException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.BookingTicket;
+import com.att.tdp.popcorn_palace.model.BookingTicket.Status;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts single bookings without deciding them on the request thread. A booking is
+ * put on a bounded queue and answered with a ticket right away; a full queue turns
+ * the booking away with {@link TooManyRequestsException} instead of letting requests
+ * wait. One validation thread takes everything queued since its last round, validates
+ * it and hands the valid bookings to the {@link BookingCoordinator} partitions, which
+ * decide and save them in batches and complete the tickets.
+ * <p>
+ * Tickets are kept in memory for the ticket TTL after they are decided, and the
+ * oldest decided tickets are dropped early once there are more than the maximum.
+ */
+public class AsyncBookingPipeline implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final MpscRingBuffer<Submission> queue;
+    private final int maxBatchSize;
+    private final long ticketTtlNanos;
+    private final int maxTickets;
+    private final BookingService bookingService;
+    private final BookingCoordinator bookingCoordinator;
+    private final IdempotencyStore idempotencyStore;
+    private final ServiceMetrics serviceMetrics;
+    private final ConcurrentHashMap<UUID, BookingTicket> tickets = new ConcurrentHashMap<>();
+    // Decided tickets in the order they were decided, so the oldest expire first
+    private final Queue<Expiry> expiries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // Producers between checking closed and offering
+    private final AtomicInteger offering = new AtomicInteger();
+    private final Thread validator;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    public AsyncBookingPipeline(int queueCapacity, int maxBatchSize, Duration ticketTtl, int maxTickets,
+            BookingService bookingService, BookingCoordinator bookingCoordinator, IdempotencyStore idempotencyStore,
+            ServiceMetrics serviceMetrics) {
+        this.queue = new MpscRingBuffer<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.ticketTtlNanos = ticketTtl.toNanos();
+        this.maxTickets = maxTickets;
+        this.bookingService = bookingService;
+        this.bookingCoordinator = bookingCoordinator;
+        this.idempotencyStore = idempotencyStore;
+        this.serviceMetrics = serviceMetrics;
+        this.validator = new Thread(this::validate, "booking-async-validator");
+        validator.setDaemon(true);
+    }
+
+    public void start() {
+        serviceMetrics.gaugeAsyncBookingsPending(pending::get);
+        validator.start();
+    }
+
+    /**
+     * Queues the booking once per idempotency key; retries with the same key and body
+     * get the ticket of the first request.
+     */
+    public BookingTicket submit(Booking booking, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return submit(booking);
+        }
+        BookingService.validateIdempotencyKey(idempotencyKey);
+        return idempotencyStore.execute(idempotencyKey, BookingService.fingerprint(booking), () -> submit(booking));
+    }
+
+    /**
+     * Queues the booking and returns its pending ticket.
+     */
+    public BookingTicket submit(Booking booking) {
+        BookingTicket ticket = new BookingTicket(UUID.randomUUID(), Status.PENDING, null, null);
+        // Counted before closed is checked, so a closing validator waits for this offer before its last drain
+        offering.incrementAndGet();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The booking pipeline is closed");
+            }
+            // Registered first so that a poll right after the response finds it
+            tickets.put(ticket.getTicketId(), ticket);
+            if (!queue.offer(new Submission(booking, ticket.getTicketId()))) {
+                tickets.remove(ticket.getTicketId());
+                serviceMetrics.countAsyncBookingThrottled();
+                throw new TooManyRequestsException("Too many bookings are waiting, try again later");
+            }
+            pending.incrementAndGet();
+        } finally {
+            offering.decrementAndGet();
+        }
+        if (idle) {
+            LockSupport.unpark(validator);
+        }
+        return ticket;
+    }
+
+    public BookingTicket getTicket(UUID ticketId) {
+        BookingTicket ticket = tickets.get(ticketId);
+        if (ticket == null) {
+            throw new NotFoundException("There is no booking ticket with the given ticketId: " + ticketId);
+        }
+        return ticket;
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the validation thread after it handed on the bookings already queued.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(validator);
+        validator.join();
+    }
+
+    private void validate() {
+        List<Submission> submissions = new ArrayList<>(maxBatchSize);
+        while (true) {
+            expireTickets(System.nanoTime());
+            if (queue.drainTo(submissions, maxBatchSize) > 0) {
+                handOn(submissions);
+                submissions.clear();
+                continue;
+            }
+            if (closed) {
+                // Bookings offered while closing are rejected rather than left pending
+                while (offering.get() > 0) {
+                    Thread.onSpinWait();
+                }
+                queue.drainTo(submissions, Integer.MAX_VALUE);
+                submissions.forEach(submission -> reject(submission.ticketId(),
+                        new IllegalStateException("The booking pipeline is closed")));
+                return;
+            }
+            // Producers check idle after offering, and the queue is checked again after setting it
+            idle = true;
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    void handOn(List<Submission> submissions) {
+        for (Submission submission : submissions) {
+            Booking booking = submission.booking();
+            try {
+                serviceMetrics.timeBookingValidation(() -> bookingService.validateBooking(booking));
+                bookingCoordinator.submit(booking).whenComplete((saved, error) -> {
+                    if (error != null) {
+                        reject(submission.ticketId(), error);
+                    } else {
+                        decide(new BookingTicket(submission.ticketId(), Status.CONFIRMED, saved.getId(), null));
+                    }
+                });
+            } catch (RuntimeException error) {
+                // Invalid bookings, and valid ones whose partition is full
+                reject(submission.ticketId(), error);
+            }
+        }
+    }
+
+    private void reject(UUID ticketId, Throwable error) {
+        String message = error.getMessage() != null ? error.getMessage() : "The booking could not be saved";
+        decide(new BookingTicket(ticketId, Status.REJECTED, null, message));
+    }
+
+    private void decide(BookingTicket ticket) {
+        tickets.put(ticket.getTicketId(), ticket);
+        expiries.add(new Expiry(ticket.getTicketId(), System.nanoTime() + ticketTtlNanos));
+        pending.decrementAndGet();
+    }
+
+    // Only called by the validation thread, which is the only one removing expiries
+    private void expireTickets(long now) {
+        Expiry oldest;
+        while ((oldest = expiries.peek()) != null
+                && (oldest.expiresAt() - now <= 0 || tickets.size() > maxTickets)) {
+            expiries.poll();
+            tickets.remove(oldest.ticketId());
+        }
+    }
+
+    record Submission(Booking booking, UUID ticketId) {
+    }
+
+    private record Expiry(UUID ticketId, long expiresAt) {
+    }
+}
@@ -0,0 +1,252 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.concurrent.MpscRingBuffer;
+import com.att.tdp.popcorn_palace.exception.BookingQueueFullException;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.TimeOrderedUuidGenerator;
+import com.att.tdp.popcorn_palace.repository.IBookingRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Books single seats on a fixed set of partitions, each a single thread fed by a
+ * lock-free ring buffer. A showtime always hashes to the same partition, so all seat
+ * decisions for it are made one after the other by one thread. A partition takes
+ * everything queued since its last round, decides the seats in order and saves the
+ * successful bookings together in one transaction (or one journal group commit),
+ * so a hot showtime costs one round trip per round rather than per booking.
+ */
+public class BookingCoordinator implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Partition[] partitions;
+    private final int maxBatchSize;
+    private final SeatOccupancy seatOccupancy;
+    private final IBookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BookingJournal bookingJournal;
+    private final SalesCounters salesCounters;
+    private final ServiceMetrics serviceMetrics;
+    private volatile boolean closed;
+
+    /**
+     * @param bookingJournal journal to confirm bookings with instead of the database, or null
+     */
+    public BookingCoordinator(int partitionCount, int queueCapacity, int maxBatchSize, SeatOccupancy seatOccupancy,
+            IBookingRepository bookingRepository, TransactionTemplate transactionTemplate,
+            BookingJournal bookingJournal, SalesCounters salesCounters, ServiceMetrics serviceMetrics) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, queueCapacity);
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.seatOccupancy = seatOccupancy;
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.bookingJournal = bookingJournal;
+        this.salesCounters = salesCounters;
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    public void start() {
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+    }
+
+    /**
+     * Queues a validated booking on its showtime's partition. The future completes
+     * with the saved booking, or fails with DataIntegrityViolationException if the
+     * seat is taken.
+     */
+    public CompletableFuture<Booking> submit(Booking booking) {
+        CompletableFuture<Booking> result = new CompletableFuture<>();
+        Partition partition = partitions[partitionOf(booking.getShowtimeId())];
+        // Counted before closed is checked, so a closing partition waits for this offer before its last drain
+        partition.offering.incrementAndGet();
+        try {
+            if (closed) {
+                result.completeExceptionally(new IllegalStateException("The booking coordinator is closed"));
+                return result;
+            }
+            if (!partition.queue.offer(new Command(booking, result))) {
+                throw new BookingQueueFullException(
+                        "Too many bookings are waiting for this showtime, try again later");
+            }
+        } finally {
+            partition.offering.decrementAndGet();
+        }
+        if (partition.idle) {
+            LockSupport.unpark(partition.thread);
+        }
+        return result;
+    }
+
+    /**
+     * Stops the partitions after they finished the bookings already queued.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+        }
+        for (Partition partition : partitions) {
+            partition.thread.join();
+        }
+    }
+
+    int partitionOf(Long showtimeId) {
+        // Spreads sequential ids, which would otherwise fill the partitions round robin in blocks
+        long hash = showtimeId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) partitions.length);
+    }
+
+    void decide(List<Command> commands) {
+        List<Command> claimed = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            Booking booking = command.booking();
+            try {
+                if (seatOccupancy.tryClaim(booking.getShowtimeId(), booking.getSeatNumber(),
+                        bookingRepository::findByShowtimeId)) {
+                    claimed.add(command);
+                } else {
+                    serviceMetrics.countSeatConflict();
+                    command.result().completeExceptionally(
+                            new DataIntegrityViolationException("The selected seat is already taken for this showtime"));
+                }
+            } catch (RuntimeException error) {
+                command.result().completeExceptionally(error);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        serviceMetrics.recordBookingPartitionBatch(claimed.size());
+        claimed.forEach(command -> salesCounters.beginWrite(command.booking().getShowtimeId()));
+        try {
+            if (bookingJournal != null) {
+                journal(claimed);
+            } else {
+                save(claimed);
+            }
+        } finally {
+            claimed.forEach(command -> salesCounters.endWrite(command.booking().getShowtimeId()));
+        }
+    }
+
+    private void save(List<Command> claimed) {
+        try {
+            serviceMetrics.timeBookingInsert(() -> transactionTemplate.execute(
+                    status -> bookingRepository.saveAll(claimed.stream().map(Command::booking).toList())));
+            claimed.forEach(command -> confirm(command, command.booking()));
+        } catch (RuntimeException batchError) {
+            // Saved one at a time so a single bad booking doesn't fail the others
+            for (Command command : claimed) {
+                command.booking().setId(null);
+                try {
+                    confirm(command, serviceMetrics.timeBookingInsert(() -> bookingRepository.save(command.booking())));
+                } catch (DataIntegrityViolationException error) {
+                    serviceMetrics.countSeatConflict();
+                    command.result().completeExceptionally(
+                            new DataIntegrityViolationException("The selected seat is already taken for this showtime"));
+                } catch (RuntimeException error) {
+                    release(command);
+                    command.result().completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+    private void journal(List<Command> claimed) {
+        List<CompletableFuture<Void>> written = new ArrayList<>(claimed.size());
+        for (Command command : claimed) {
+            command.booking().setId(TimeOrderedUuidGenerator.next());
+            written.add(bookingJournal.append(command.booking()));
+        }
+        for (int i = 0; i < claimed.size(); i++) {
+            Command command = claimed.get(i);
+            try {
+                written.get(i).join();
+                salesCounters.recordJournaled(command.booking().getShowtimeId(), 1);
+                command.result().complete(command.booking());
+            } catch (CompletionException error) {
+                release(command);
+                command.result().completeExceptionally(error.getCause());
+            }
+        }
+    }
+
+    private void confirm(Command command, Booking savedBooking) {
+        salesCounters.recordSold(savedBooking.getShowtimeId(), 1);
+        command.result().complete(savedBooking);
+    }
+
+    private void release(Command command) {
+        seatOccupancy.release(command.booking().getShowtimeId(), command.booking().getSeatNumber());
+    }
+
+    private final class Partition implements Runnable {
+        private final MpscRingBuffer<Command> queue;
+        // Producers between checking closed and offering
+        private final AtomicInteger offering = new AtomicInteger();
+        private final Thread thread;
+        private volatile boolean idle;
+
+        private Partition(int index, int queueCapacity) {
+            this.queue = new MpscRingBuffer<>(queueCapacity);
+            this.thread = new Thread(this, "booking-partition-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Command> commands = new ArrayList<>(maxBatchSize);
+            while (true) {
+                if (queue.drainTo(commands, maxBatchSize) > 0) {
+                    try {
+                        decide(commands);
+                    } catch (RuntimeException error) {
+                        commands.forEach(command -> command.result().completeExceptionally(error));
+                    }
+                    commands.clear();
+                    continue;
+                }
+                if (closed) {
+                    // Bookings offered while closing are failed rather than left waiting
+                    while (offering.get() > 0) {
+                        Thread.onSpinWait();
+                    }
+                    queue.drainTo(commands, Integer.MAX_VALUE);
+                    commands.forEach(command -> command.result().completeExceptionally(
+                            new IllegalStateException("The booking coordinator is closed")));
+                    return;
+                }
+                // Producers check idle after offering, and the queue is checked again after setting it
+                idle = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    record Command(Booking booking, CompletableFuture<Booking> result) {
+    }
+}
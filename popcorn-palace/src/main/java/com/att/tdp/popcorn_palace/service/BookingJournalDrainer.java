@@ -0,0 +1,191 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.journal.BookingJournal.JournaledBooking;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes journaled bookings to the booking table in batches, each batch in one
+ * transaction, and checkpoints the journal after it. Rows are inserted with
+ * ON CONFLICT DO NOTHING, so bookings replayed after a crash that were already
+ * inserted are skipped. Bookings of showtimes deleted in the meantime are dropped:
+ * the insert only selects a showtime that still exists, and the booking table's
+ * foreign key deletes the ones a showtime delete committed after.
+ * <p>
+ * ON CONFLICT DO NOTHING also skips a booking whose seat is taken in the table by
+ * another booking. Such a booking was confirmed to its client but can't be written,
+ * so each skipped booking that isn't in the table is looked up afterwards and, if its
+ * showtime still exists, logged and counted as lost.
+ * On {@link #start} everything left in the journal is drained before the
+ * application serves requests, since seat occupancy is loaded from the table.
+ * Bookings journaled since are counted as sold while waiting, and are taken off
+ * {@link SalesCounters}' journal counts once their batch committed.
+ */
+public class BookingJournalDrainer implements AutoCloseable {
+    private static final String INSERT_BOOKING = "INSERT INTO booking (id, showtime_id, seat_number, user_id) "
+            + "SELECT ?, id, ?, ? FROM show_time WHERE id = ? AND deleted = FALSE ON CONFLICT DO NOTHING";
+    private static final Logger log = LoggerFactory.getLogger(BookingJournalDrainer.class);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final BookingJournal bookingJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShowTimeRegistry showTimeRegistry;
+    private final IShowTimeRepository showTimeRepository;
+    private final SalesCounters salesCounters;
+    private final ServiceMetrics serviceMetrics;
+    private final int batchSize;
+    private volatile Thread worker;
+    private volatile boolean closed;
+
+    public BookingJournalDrainer(BookingJournal bookingJournal, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, ShowTimeRegistry showTimeRegistry,
+            IShowTimeRepository showTimeRepository, SalesCounters salesCounters, ServiceMetrics serviceMetrics,
+            int batchSize) {
+        this.bookingJournal = bookingJournal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.showTimeRegistry = showTimeRegistry;
+        this.showTimeRepository = showTimeRepository;
+        this.salesCounters = salesCounters;
+        this.serviceMetrics = serviceMetrics;
+        this.batchSize = batchSize;
+    }
+
+    public void start() throws IOException, InterruptedException {
+        serviceMetrics.gaugeJournalPending(bookingJournal::pendingCount);
+        List<JournaledBooking> replayed;
+        while (!(replayed = bookingJournal.takePending(batchSize, Duration.ZERO)).isEmpty()) {
+            // Replayed bookings were counted as sold by the run that journaled them, not by this one
+            insert(replayed);
+        }
+        Thread thread = new Thread(this::run, "booking-journal-drainer");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Inserts bookings journaled by this run and takes them off the journal counts.
+     */
+    void drain(List<JournaledBooking> batch) throws IOException {
+        batch.forEach(journaled -> salesCounters.beginWrite(journaled.booking().getShowtimeId()));
+        try {
+            insert(batch);
+            batch.forEach(journaled -> salesCounters.recordDrained(journaled.booking().getShowtimeId(), 1));
+        } finally {
+            batch.forEach(journaled -> salesCounters.endWrite(journaled.booking().getShowtimeId()));
+        }
+    }
+
+    /**
+     * Inserts the bookings in one transaction and checkpoints the journal after the last of them.
+     */
+    private void insert(List<JournaledBooking> batch) throws IOException {
+        List<Booking> bookings = new ArrayList<>(batch.size());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (JournaledBooking journaled : batch) {
+            Booking booking = journaled.booking();
+            // Counts most dropped bookings, one whose showtime is deleted meanwhile is counted below
+            if (showTimeRegistry.find(booking.getShowtimeId(), showTimeRepository::findAllSummaries) != null) {
+                bookings.add(booking);
+                rows.add(new Object[] { booking.getId(), booking.getSeatNumber(), booking.getUserId(),
+                        booking.getShowtimeId() });
+            }
+        }
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_BOOKING, rows));
+        int inserted = 0;
+        List<Booking> skipped = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                inserted++;
+            } else {
+                skipped.add(bookings.get(i));
+            }
+        }
+        int duplicates = 0;
+        int dropped = batch.size() - rows.size();
+        int lost = 0;
+        if (!skipped.isEmpty()) {
+            Set<UUID> present = findPresent(skipped);
+            for (Booking booking : skipped) {
+                if (present.contains(booking.getId())) {
+                    duplicates++;
+                } else if (showTimeRegistry.find(booking.getShowtimeId(),
+                        showTimeRepository::findAllSummaries) == null) {
+                    dropped++;
+                } else {
+                    lost++;
+                    log.error("Journaled booking {} of showtime {} was lost, seat {} is taken by another booking",
+                            booking.getId(), booking.getShowtimeId(), booking.getSeatNumber());
+                }
+            }
+        }
+        bookingJournal.markDrained(batch.get(batch.size() - 1));
+        serviceMetrics.recordJournalDrain(inserted, duplicates, dropped, lost);
+    }
+
+    // The ids of the given bookings that are in the booking table
+    private Set<UUID> findPresent(List<Booking> bookings) {
+        String placeholders = String.join(", ", Collections.nCopies(bookings.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM booking WHERE id IN (" + placeholders + ")",
+                UUID.class, bookings.stream().map(Booking::getId).toArray()));
+    }
+
+    /**
+     * Stops draining. Bookings still in the journal are drained on the next start.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void run() {
+        List<JournaledBooking> batch = List.of();
+        while (!closed) {
+            try {
+                if (batch.isEmpty()) {
+                    batch = bookingJournal.takePending(batchSize, POLL_INTERVAL);
+                }
+                if (!batch.isEmpty()) {
+                    drain(batch);
+                    batch = List.of();
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } catch (IOException | RuntimeException e) {
+                // The database or the checkpoint failed, the same batch is retried
+                serviceMetrics.countJournalDrainFailure();
+                try {
+                    Thread.sleep(RETRY_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    // closed
+                }
+            }
+        }
+    }
+}
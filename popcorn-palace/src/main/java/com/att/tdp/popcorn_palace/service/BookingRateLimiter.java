@@ -0,0 +1,39 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.concurrent.TokenBuckets;
+import com.att.tdp.popcorn_palace.exception.TooManyRequestsException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+
+/**
+ * Admits booking requests per user and per client address before they are validated,
+ * so that one client sending bookings as fast as it can is turned away with
+ * {@link TooManyRequestsException} without reaching the database. Each user and each
+ * address has its own token bucket; an address is checked first so a client can't
+ * get past its limit by making up user ids.
+ */
+public class BookingRateLimiter {
+    private final TokenBuckets userBuckets;
+    private final TokenBuckets clientBuckets;
+    private final ServiceMetrics serviceMetrics;
+
+    public BookingRateLimiter(TokenBuckets userBuckets, TokenBuckets clientBuckets, ServiceMetrics serviceMetrics) {
+        this.userBuckets = userBuckets;
+        this.clientBuckets = clientBuckets;
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    /**
+     * Takes a booking attempt from the client's and the user's allowance. A missing
+     * user id is left to validation, which rejects it.
+     */
+    public void admit(String userId, String clientAddress) {
+        if (clientAddress != null && !clientBuckets.tryAcquire(clientAddress)) {
+            serviceMetrics.countClientBookingRateLimited();
+            throw new TooManyRequestsException("Too many bookings from this client, try again later", false);
+        }
+        if (userId != null && !userBuckets.tryAcquire(userId)) {
+            serviceMetrics.countUserBookingRateLimited();
+            throw new TooManyRequestsException("Too many bookings for this user, try again later", false);
+        }
+    }
+}
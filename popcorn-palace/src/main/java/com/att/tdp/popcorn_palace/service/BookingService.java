@@ -1,59 +1,311 @@
 package com.att.tdp.popcorn_palace.service;
 
+import com.att.tdp.popcorn_palace.cache.IdempotencyStore;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.config.ReadFromReplica;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.BatchBooking;
 import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
+import com.att.tdp.popcorn_palace.model.TimeOrderedUuidGenerator;
 import com.att.tdp.popcorn_palace.repository.IBookingRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class BookingService {
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     @Autowired
     private IBookingRepository bookingRepository;
 
     @Autowired
     private IShowTimeRepository showTimeRepository;
 
+    @Autowired
+    private SeatOccupancy seatOccupancy;
+
+    @Autowired
+    private ShowTimeRegistry showTimeRegistry;
+
+    @Autowired
+    private ServiceMetrics serviceMetrics;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private SalesCounters salesCounters;
+
+    // Present when popcorn-palace.booking.journal.enabled is true
+    @Autowired(required = false)
+    private BookingJournal bookingJournal;
+
+    // Present when popcorn-palace.booking.partitions.enabled is true
+    @Autowired(required = false)
+    private BookingCoordinator bookingCoordinator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @ReadFromReplica
     public List<Booking> getAllBookings() {
         return bookingRepository.findAll();
     }
 
+    @ReadFromReplica
+    public KeysetPage<Booking> getBookingsPage(String after, int limit) {
+        KeysetPage.validateLimit(limit);
+        List<Booking> bookings;
+        if (after == null) {
+            bookings = bookingRepository.findByOrderByIdAsc(Limit.of(limit + 1));
+        } else {
+            UUID afterId;
+            try {
+                afterId = UUID.fromString(after);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("after must be a booking id returned as nextCursor");
+            }
+            bookings = bookingRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit + 1));
+        }
+        return KeysetPage.of(bookings, limit, Booking::getId);
+    }
+
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public void streamAllBookings(Consumer<Booking> consumer) {
+        try (Stream<Booking> bookings = bookingRepository.streamAll()) {
+            bookings.forEach(booking -> {
+                consumer.accept(booking);
+                entityManager.detach(booking);
+            });
+        }
+    }
+
+    /**
+     * Creates the booking once per idempotency key; retries with the same key and body
+     * get the booking created by the first request without validating or saving again.
+     */
+    public Booking createBooking(Booking booking, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createBooking(booking);
+        }
+        validateIdempotencyKey(idempotencyKey);
+        return idempotencyStore.execute(idempotencyKey, fingerprint(booking), () -> createBooking(booking));
+    }
+
+    static void validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Idempotency-Key must be between 1 and " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+    }
+
+    // Identifies the booking a key was first used for
+    static List<Object> fingerprint(Booking booking) {
+        return Arrays.asList(booking.getShowtimeId(), booking.getSeatNumber(), booking.getUserId());
+    }
+
     public Booking createBooking(Booking booking) {
-        validateBooking(booking);
-        Optional<Booking> existingBooking = bookingRepository.findByShowtimeIdAndSeatNumber(booking.getShowtimeId(),
-                booking.getSeatNumber());
-        if (existingBooking.isPresent()) {
+        serviceMetrics.timeBookingValidation(() -> validateBooking(booking));
+        if (bookingCoordinator != null) {
+            return join(bookingCoordinator.submit(booking));
+        }
+        boolean claimed = serviceMetrics.timeBookingSeatLookup(() -> seatOccupancy.tryClaim(
+                booking.getShowtimeId(), booking.getSeatNumber(), bookingRepository::findByShowtimeId));
+        if (!claimed) {
+            serviceMetrics.countSeatConflict();
             throw new DataIntegrityViolationException("The selected seat is already taken for this showtime");
         }
-        return bookingRepository.save(booking);
+        Booking savedBooking;
+        salesCounters.beginWrite(booking.getShowtimeId());
+        try {
+            if (bookingJournal != null) {
+                savedBooking = serviceMetrics.timeBookingInsert(() -> journal(booking));
+                salesCounters.recordJournaled(booking.getShowtimeId(), 1);
+            } else {
+                savedBooking = serviceMetrics.timeBookingInsert(() -> bookingRepository.save(booking));
+                salesCounters.recordSold(booking.getShowtimeId(), 1);
+            }
+        } catch (DataIntegrityViolationException error) {
+            serviceMetrics.countSeatConflict();
+            throw new DataIntegrityViolationException("The selected seat is already taken for this showtime");
+        } catch (RuntimeException error) {
+            seatOccupancy.release(booking.getShowtimeId(), booking.getSeatNumber());
+            throw error;
+        } finally {
+            salesCounters.endWrite(booking.getShowtimeId());
+        }
+        return savedBooking;
+    }
+
+    /**
+     * Confirms the booking once it is fsynced to the journal; BookingJournalDrainer
+     * writes it to the booking table afterwards.
+     */
+    private Booking journal(Booking booking) {
+        booking.setId(TimeOrderedUuidGenerator.next());
+        join(bookingJournal.append(booking));
+        return booking;
+    }
+
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException error) {
+            throw error.getCause() instanceof RuntimeException cause ? cause : error;
+        }
+    }
+
+    @Transactional
+    public List<Booking> createBookings(BatchBooking batchBooking) {
+        serviceMetrics.timeBookingValidation(() -> validateSeatSelection(batchBooking.getShowtimeId(),
+                batchBooking.getUserId(), batchBooking.getSeatNumbers()));
+        claimSeats(batchBooking.getShowtimeId(), batchBooking.getSeatNumbers());
+        return saveClaimedSeats(batchBooking.getShowtimeId(), batchBooking.getUserId(),
+                batchBooking.getSeatNumbers());
+    }
+
+    /**
+     * Claims all the given seats or none of them.
+     */
+    void claimSeats(Long showtimeId, List<Integer> seatNumbers) {
+        List<Integer> claimedSeats = new ArrayList<>();
+        for (Integer seatNumber : seatNumbers) {
+            if (!seatOccupancy.tryClaim(showtimeId, seatNumber, bookingRepository::findByShowtimeId)) {
+                releaseSeats(showtimeId, claimedSeats);
+                serviceMetrics.countSeatConflict();
+                throw new DataIntegrityViolationException(
+                        "Seat " + seatNumber + " is already taken for this showtime");
+            }
+            claimedSeats.add(seatNumber);
+        }
+    }
+
+    /**
+     * Persists bookings for seats that were already claimed in {@link SeatOccupancy}.
+     */
+    List<Booking> saveClaimedSeats(Long showtimeId, String userId, List<Integer> claimedSeats) {
+        List<Booking> bookings = new ArrayList<>();
+        for (Integer seatNumber : claimedSeats) {
+            Booking booking = new Booking();
+            booking.setShowtimeId(showtimeId);
+            booking.setSeatNumber(seatNumber);
+            booking.setUserId(userId);
+            bookings.add(booking);
+        }
+        List<Booking> savedBookings;
+        salesCounters.beginWrite(showtimeId);
+        // The bookings commit with the caller's transaction, so the write ends when it completes
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    salesCounters.endWrite(showtimeId);
+                }
+            });
+        }
+        try {
+            savedBookings = bookingRepository.saveAllAndFlush(bookings);
+            salesCounters.recordSold(showtimeId, savedBookings.size());
+        } catch (DataIntegrityViolationException error) {
+            // The whole batch rolled back; the seat that is really taken is rejected by the database again
+            releaseSeats(showtimeId, claimedSeats);
+            serviceMetrics.countSeatConflict();
+            throw new DataIntegrityViolationException("One of the selected seats is already taken for this showtime");
+        } catch (RuntimeException error) {
+            releaseSeats(showtimeId, claimedSeats);
+            throw error;
+        } finally {
+            if (!inTransaction) {
+                salesCounters.endWrite(showtimeId);
+            }
+        }
+        return savedBookings;
+    }
+
+    void releaseSeats(Long showtimeId, List<Integer> seatNumbers) {
+        for (Integer seatNumber : seatNumbers) {
+            seatOccupancy.release(showtimeId, seatNumber);
+        }
     }
 
-    private void validateBooking(Booking booking) {
-        if (booking.getShowtimeId() == null || booking.getShowtimeId() <= 0) {
+    void validateBooking(Booking booking) {
+        validateShowtimeId(booking.getShowtimeId());
+        validateSeatNumber(booking.getSeatNumber());
+        validateUserAndShowtime(booking.getUserId(), booking.getShowtimeId());
+    }
+
+    void validateSeatSelection(Long showtimeId, String userId, List<Integer> seatNumbers) {
+        validateShowtimeId(showtimeId);
+        if (seatNumbers == null || seatNumbers.isEmpty()) {
+            throw new IllegalArgumentException("Seat numbers are required and can't be empty");
+        }
+        Set<Integer> distinctSeats = new HashSet<>();
+        for (Integer seatNumber : seatNumbers) {
+            validateSeatNumber(seatNumber);
+            if (!distinctSeats.add(seatNumber)) {
+                throw new IllegalArgumentException("Seat " + seatNumber + " was requested more than once");
+            }
+        }
+        validateUserAndShowtime(userId, showtimeId);
+    }
+
+    private void validateShowtimeId(Long showtimeId) {
+        if (showtimeId == null || showtimeId <= 0) {
             throw new IllegalArgumentException("Showtime ID is required and must be a valid number greater than 0");
         }
-        
-        if (booking.getSeatNumber() == null || booking.getSeatNumber() <= 0) {
+    }
+
+    private void validateSeatNumber(Integer seatNumber) {
+        if (seatNumber == null || seatNumber <= 0) {
             throw new IllegalArgumentException("Seat number is required and must be greater than 0");
         }
-        if (booking.getUserId() == null || booking.getUserId().trim().isEmpty()) {
-            throw new IllegalArgumentException("User ID is required and can't be empty");
+        if (seatNumber > seatOccupancy.getMaxSeatNumber()) {
+            throw new IllegalArgumentException(
+                    "Seat number can't be greater than " + seatOccupancy.getMaxSeatNumber());
         }
-        if (!showTimeRepository.existsById(booking.getShowtimeId())) {
-            throw new IllegalArgumentException("There is no showtime with the given showtimeId: " + booking.getShowtimeId());
+    }
+
+    // Only in-memory checks, the showtime is looked up in the registry rather than the database
+    private void validateUserAndShowtime(String userId, Long showtimeId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            throw new IllegalArgumentException("User ID is required and can't be empty");
         }
-        if (!showTimeRepository.existsById(booking.getShowtimeId())) {
-            throw new IllegalArgumentException(
-                    "There is no showtime with the given showtimeId: " + booking.getShowtimeId());
+        ShowTimeRegistry.Entry showTime = showTimeRegistry.find(showtimeId, showTimeRepository::findAllSummaries);
+        if (showTime == null) {
+            throw new IllegalArgumentException("There is no showtime with the given showtimeId: " + showtimeId);
         }
         try {
-            UUID.fromString(booking.getUserId());
+            UUID.fromString(userId);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("User ID must be a valid UUID");
         }
+        if (!showTime.startTime().isAfter(Instant.now())) {
+            throw new IllegalArgumentException("The showtime has already started and can't be booked");
+        }
     }
-}
\ No newline at end of file
+}
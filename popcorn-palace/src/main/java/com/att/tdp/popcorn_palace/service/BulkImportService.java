@@ -0,0 +1,233 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex.Reservation;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.model.ImportResult;
+import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.repository.IMovieRepository;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports movies and showtimes from NDJSON or CSV files. Records are read and
+ * validated one at a time and saved in batches of popcorn-palace.import.batch-size,
+ * each batch in its own transaction with batched inserts, so memory is bounded by
+ * the batch size rather than the file. Invalid lines are reported and skipped.
+ */
+@Service
+public class BulkImportService {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    @Autowired
+    private MovieService movieService;
+    @Autowired
+    private ShowTimeService showTimeService;
+    @Autowired
+    private IMovieRepository movieRepository;
+    @Autowired
+    private IShowTimeRepository showTimeRepository;
+    @Autowired
+    private ShowTimeIntervalIndex showTimeIndex;
+    @Autowired
+    private ShowTimeRegistry showTimeRegistry;
+    @Autowired
+    private MovieCache movieCache;
+    @Autowired
+    private SalesCounters salesCounters;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${popcorn-palace.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    public ImportResult importMovies(Reader body, String contentType) {
+        ImportRecordReader records = recordReader(body, contentType);
+        ImportResult result = new ImportResult();
+        List<Pending<Movie>> batch = new ArrayList<>();
+        Set<String> batchTitles = new HashSet<>();
+        ImportRecordReader.Record record;
+        while ((record = records.next()) != null) {
+            Movie movie = parse(record, Movie.class, result);
+            if (movie == null) {
+                continue;
+            }
+            try {
+                movie.setId(null);
+                movieService.validateMovie(movie);
+                if (!batchTitles.add(movie.getTitle())) {
+                    throw new DataIntegrityViolationException("A movie with this title already exists");
+                }
+            } catch (RuntimeException error) {
+                result.addError(record.lineNumber(), errorMessage(error));
+                continue;
+            }
+            batch.add(new Pending<>(record.lineNumber(), movie));
+            if (batch.size() == batchSize) {
+                saveMovies(batch, result);
+                batch.clear();
+                batchTitles.clear();
+            }
+        }
+        saveMovies(batch, result);
+        result.sortErrors();
+        return result;
+    }
+
+    public ImportResult importShowTimes(Reader body, String contentType) {
+        ImportRecordReader records = recordReader(body, contentType);
+        ImportResult result = new ImportResult();
+        List<Pending<ShowTime>> batch = new ArrayList<>();
+        // Held in showTimeIndex until the batch is saved, so later lines and concurrent adds overlap with them
+        List<Reservation> reservations = new ArrayList<>();
+        try {
+            ImportRecordReader.Record record;
+            while ((record = records.next()) != null) {
+                ShowTime showTime = parse(record, ShowTime.class, result);
+                if (showTime == null) {
+                    continue;
+                }
+                Reservation reservation;
+                try {
+                    showTime.setId(null);
+                    showTimeService.validateShowTime(showTime);
+                    reservation = showTimeIndex.tryReserve(showTime.getTheater(), showTime.getStartTime(),
+                            showTime.getEndTime(), null, showTimeRepository::findByTheater);
+                    if (reservation == null) {
+                        throw new DataIntegrityViolationException(
+                                "The showTime you are trying to add overlaps with an existing showTime");
+                    }
+                } catch (RuntimeException error) {
+                    result.addError(record.lineNumber(), errorMessage(error));
+                    continue;
+                }
+                batch.add(new Pending<>(record.lineNumber(), showTime));
+                reservations.add(reservation);
+                if (batch.size() == batchSize) {
+                    saveShowTimes(batch, reservations, result);
+                    batch.clear();
+                    reservations.clear();
+                }
+            }
+            saveShowTimes(batch, reservations, result);
+            reservations.clear();
+        } finally {
+            // Lines of a batch that was never saved, e.g. when reading the file failed
+            reservations.forEach(showTimeIndex::cancel);
+        }
+        result.sortErrors();
+        return result;
+    }
+
+    private void saveMovies(List<Pending<Movie>> batch, ImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> existingTitles = new HashSet<>();
+        movieRepository.findByTitleIn(batch.stream().map(pending -> pending.entity().getTitle()).toList())
+                .forEach(existingMovie -> existingTitles.add(existingMovie.getTitle()));
+        List<Pending<Movie>> newMovies = new ArrayList<>();
+        for (Pending<Movie> pending : batch) {
+            if (existingTitles.contains(pending.entity().getTitle())) {
+                result.addError(pending.lineNumber(), "A movie with this title already exists");
+            } else {
+                newMovies.add(pending);
+            }
+        }
+        if (persist(newMovies, result)) {
+            catalogVersions.changed(Catalog.MOVIES);
+        }
+        for (Pending<Movie> pending : newMovies) {
+            movieCache.invalidate(pending.entity().getId(), pending.entity().getTitle());
+        }
+    }
+
+    private void saveShowTimes(List<Pending<ShowTime>> batch, List<Reservation> reservations, ImportResult result) {
+        if (!persist(batch, result)) {
+            reservations.forEach(showTimeIndex::cancel);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            ShowTime showTime = batch.get(i).entity();
+            showTimeIndex.confirm(reservations.get(i), showTime);
+            // Counted before it can be booked, as in ShowTimeService.addShowTime
+            salesCounters.register(showTime.getId(), showTime.getMovieId(), showTime.getPrice());
+            showTimeRegistry.register(showTime.getId(), showTime.getStartTime());
+        }
+        catalogVersions.changed(Catalog.SHOWTIMES);
+    }
+
+    private <T> boolean persist(List<Pending<T>> batch, ImportResult result) {
+        if (batch.isEmpty()) {
+            return false;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batch.forEach(pending -> entityManager.persist(pending.entity()));
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (RuntimeException error) {
+            String message = "The batch of this line could not be saved: "
+                    + NestedExceptionUtils.getMostSpecificCause(error).getMessage();
+            batch.forEach(pending -> result.addError(pending.lineNumber(), message));
+            return false;
+        }
+        result.setImported(result.getImported() + batch.size());
+        return true;
+    }
+
+    private <T> T parse(ImportRecordReader.Record record, Class<T> type, ImportResult result) {
+        if (record.error() != null) {
+            result.addError(record.lineNumber(), record.error());
+            return null;
+        }
+        try {
+            return objectMapper.treeToValue(record.fields(), type);
+        } catch (JsonProcessingException error) {
+            result.addError(record.lineNumber(), "Invalid value: " + error.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private ImportRecordReader recordReader(Reader body, String contentType) {
+        boolean csv = contentType != null
+                && MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV));
+        return new ImportRecordReader(new BufferedReader(body), objectMapper, csv);
+    }
+
+    private static String errorMessage(RuntimeException error) {
+        return error.getMessage() != null ? error.getMessage() : "Invalid record";
+    }
+
+    private record Pending<T>(int lineNumber, T entity) {
+    }
+}
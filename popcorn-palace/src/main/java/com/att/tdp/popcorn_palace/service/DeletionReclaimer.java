@@ -0,0 +1,112 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.repository.IMovieRepository;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background half of asynchronous movie deletes. Deleting a movie only removes its
+ * row and tombstones its showtimes, which hides them from every query; the showtimes
+ * and their bookings are then removed here in short chunked transactions. Runs right
+ * after a delete, on startup and periodically, so tombstones left behind by a restart
+ * are reclaimed too.
+ */
+@Component
+public class DeletionReclaimer {
+    @Autowired
+    private IMovieRepository movieRepository;
+
+    @Autowired
+    private IShowTimeRepository showTimeRepository;
+
+    @Autowired
+    private ShowTimeService showTimeService;
+
+    @Autowired
+    private ServiceMetrics serviceMetrics;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${popcorn-palace.deletes.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean reclaimRequested = new AtomicBoolean();
+
+    /**
+     * Deletes the movie and tombstones its showtimes in one transaction, returning the
+     * showtimes that were tombstoned.
+     */
+    @Transactional
+    public List<ShowTime> tombstoneMovie(Movie movie) {
+        List<ShowTime> showTimes = showTimeRepository.findByMovieId(movie.getId());
+        showTimeRepository.tombstoneByMovieId(movie.getId());
+        movieRepository.delete(movie);
+        return showTimes;
+    }
+
+    /**
+     * Starts reclaiming in the background unless a run is already in progress, in
+     * which case that run goes around once more.
+     */
+    public void requestReclaim() {
+        reclaimRequested.set(true);
+        if (running.compareAndSet(false, true)) {
+            taskExecutor.execute(this::drain);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${popcorn-palace.deletes.reclaim-interval:10m}",
+            initialDelayString = "${popcorn-palace.deletes.reclaim-interval:10m}")
+    public void reclaimPeriodically() {
+        requestReclaim();
+    }
+
+    /**
+     * Removes all tombstoned showtimes and their bookings, returns the number of showtimes removed.
+     */
+    public int reclaimTombstones() {
+        int reclaimedShowTimes = 0;
+        int reclaimedBookings = 0;
+        List<Long> showTimeIds;
+        while (!(showTimeIds = showTimeRepository.findTombstonedIds(chunkSize)).isEmpty()) {
+            reclaimedBookings += showTimeService.deleteShowTimeRows(showTimeIds);
+            reclaimedShowTimes += showTimeIds.size();
+        }
+        serviceMetrics.recordReclaimed(reclaimedShowTimes, reclaimedBookings);
+        return reclaimedShowTimes;
+    }
+
+    private void drain() {
+        while (true) {
+            try {
+                while (reclaimRequested.getAndSet(false)) {
+                    reclaimTombstones();
+                }
+            } finally {
+                running.set(false);
+            }
+            // A request that arrived after the last check but before running was cleared
+            if (!reclaimRequested.get() || !running.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
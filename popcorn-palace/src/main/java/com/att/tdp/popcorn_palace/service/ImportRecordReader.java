@@ -0,0 +1,122 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an import file one record at a time, so memory doesn't grow with the file.
+ * NDJSON files hold one JSON object per line. CSV files start with a header line
+ * naming the fields; values may be double-quoted and empty values are left unset.
+ * Blank lines are skipped. Line numbers count every physical line, the CSV header included.
+ */
+class ImportRecordReader {
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private final boolean csv;
+    private List<String> header;
+    private int lineNumber;
+
+    ImportRecordReader(BufferedReader reader, ObjectMapper objectMapper, boolean csv) {
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+        this.csv = csv;
+    }
+
+    /**
+     * Returns the next record, or null at the end of the file. A line that can't be
+     * parsed is returned as a record with an error instead of failing the whole file.
+     */
+    Record next() {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+        try {
+            if (!csv) {
+                if (!(objectMapper.readTree(line) instanceof ObjectNode fields)) {
+                    return new Record(lineNumber, null, "Each line must be a JSON object");
+                }
+                return new Record(lineNumber, fields, null);
+            }
+            if (header == null) {
+                header = parseCsvLine(line).stream().map(String::trim).toList();
+                return next();
+            }
+            return new Record(lineNumber, csvFields(parseCsvLine(line)), null);
+        } catch (JsonProcessingException e) {
+            return new Record(lineNumber, null, "Malformed line: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return new Record(lineNumber, null, "Malformed line: " + e.getMessage());
+        }
+    }
+
+    private ObjectNode csvFields(List<String> values) {
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException(
+                    "expected " + header.size() + " values but found " + values.size());
+        }
+        ObjectNode fields = objectMapper.createObjectNode();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty()) {
+                fields.put(header.get(i), values.get(i));
+            }
+        }
+        return fields;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private String readLine() {
+        try {
+            String line = reader.readLine();
+            if (line != null) {
+                lineNumber++;
+            }
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record Record(int lineNumber, ObjectNode fields, String error) {
+    }
+}
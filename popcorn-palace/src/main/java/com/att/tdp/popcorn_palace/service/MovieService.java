@@ -1,17 +1,33 @@
 package com.att.tdp.popcorn_palace.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.config.ReadFromReplica;
 import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.MovieStats;
 import com.att.tdp.popcorn_palace.model.ShowTime;
 import com.att.tdp.popcorn_palace.repository.IMovieRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class MovieService {
@@ -22,29 +38,66 @@ public class MovieService {
     private IShowTimeRepository showTimeRepository;
     @Autowired
     private ShowTimeService showTimeService;
+    @Autowired
+    private ServiceMetrics serviceMetrics;
+    @Autowired
+    private MovieCache movieCache;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private SalesCounters salesCounters;
+    @Autowired
+    private DeletionReclaimer deletionReclaimer;
+    @Value("${popcorn-palace.deletes.async:false}")
+    private boolean asyncDeletes;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     public List<Movie> getAllMovies() {
         return movieRepository.findAll();
     }
 
+    @ReadFromReplica
+    public KeysetPage<Movie> getMoviesPage(Long after, int limit) {
+        KeysetPage.validateLimit(limit);
+        List<Movie> movies = movieRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after,
+                Limit.of(limit + 1));
+        return KeysetPage.of(movies, limit, Movie::getId);
+    }
+
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public void streamAllMovies(Consumer<Movie> consumer) {
+        try (Stream<Movie> movies = movieRepository.streamAll()) {
+            movies.forEach(movie -> {
+                consumer.accept(movie);
+                entityManager.detach(movie);
+            });
+        }
+    }
+
     public Movie addMovie(Movie movie) {
         validateMovie(movie);
         try {
             return movieRepository.save(movie);
         } catch (DataIntegrityViolationException error) {
             throw new DataIntegrityViolationException("A movie with this title already exists");
+        } finally {
+            movieCache.invalidate(movie.getId(), movie.getTitle());
+            catalogVersions.changed(Catalog.MOVIES);
         }
     }
 
     public Movie updateMovie(String title, Movie updatedMovie) {
-        Movie existingMovie = movieRepository.findByTitle(title)
+        Movie existingMovie = movieCache.findByTitle(title, movieRepository::findByTitle)
                 .orElseThrow(() -> new NotFoundException("There is no movie with the given title '" + title + "'"));
         Integer movieBeforeUpdateDuration = existingMovie.getDuration();
         if (updatedMovie.getTitle() != null && updatedMovie.getTitle().trim().isEmpty()) {
             throw new IllegalArgumentException("Title can't be empty");
         }
         if (updatedMovie.getTitle() != null && !updatedMovie.getTitle().trim().isEmpty()) {
-            Optional<Movie> movieWithNewTitle = movieRepository.findByTitle(updatedMovie.getTitle());
+            Optional<Movie> movieWithNewTitle = movieCache.findByTitle(updatedMovie.getTitle(),
+                    movieRepository::findByTitle);
             if (movieWithNewTitle.isPresent() && !movieWithNewTitle.get().getId().equals(existingMovie.getId())) {
                 throw new RuntimeException("The updated title is already taken");
             }
@@ -79,20 +132,49 @@ public class MovieService {
             }
         }
 
-        return movieRepository.save(existingMovie);
+        try {
+            return movieRepository.save(existingMovie);
+        } finally {
+            movieCache.invalidate(existingMovie.getId(), title, existingMovie.getTitle());
+            catalogVersions.changed(Catalog.MOVIES);
+        }
+    }
+
+    /**
+     * Served from the in-memory sales counters; a movie without showtimes has sold nothing.
+     */
+    public MovieStats getMovieStats(String title) {
+        Movie movie = movieCache.findByTitle(title, movieRepository::findByTitle)
+                .orElseThrow(() -> new NotFoundException("There is no movie with the given title '" + title + "'"));
+        SalesCounters.MovieCounters counters = salesCounters.findMovie(movie.getId(), showTimeRepository::findAllSales);
+        if (counters == null) {
+            return new MovieStats(movie.getId(), movie.getTitle(), 0, 0, 0);
+        }
+        return new MovieStats(movie.getId(), movie.getTitle(), counters.showTimes(), counters.seatsSold(),
+                counters.revenue());
     }
 
     public void deleteMovieByTitle(String title) {
-        Movie movie = movieRepository.findByTitle(title)
+        Movie movie = movieCache.findByTitle(title, movieRepository::findByTitle)
                 .orElseThrow(() -> new NotFoundException("There is no movie with the given title '" + title + "'"));
-        List<ShowTime> relatedShowTimes = showTimeRepository.findByMovieId(movie.getId());
-        for (ShowTime showTime : relatedShowTimes) {
-            showTimeService.deleteShowTimeById(showTime.getId());
+        try {
+            if (asyncDeletes) {
+                List<ShowTime> tombstonedShowTimes = deletionReclaimer.tombstoneMovie(movie);
+                showTimeService.evictShowTimes(tombstonedShowTimes);
+                deletionReclaimer.requestReclaim();
+                return;
+            }
+            List<ShowTime> relatedShowTimes = showTimeRepository.findByMovieId(movie.getId());
+            int deletedBookings = showTimeService.deleteShowTimes(relatedShowTimes);
+            movieRepository.delete(movie);
+            serviceMetrics.recordMovieCascadeDelete(relatedShowTimes.size(), deletedBookings);
+        } finally {
+            movieCache.invalidate(movie.getId(), title);
+            catalogVersions.changed(Catalog.MOVIES);
         }
-        movieRepository.delete(movie);
     }
 
-    private void validateMovie(Movie movie) {
+    void validateMovie(Movie movie) {
         if (movie.getTitle() == null || movie.getTitle().trim().isEmpty()) {
             throw new IllegalArgumentException("Title is required and can't be empty");
         }
@@ -0,0 +1,155 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.concurrent.HashedTimerWheel;
+import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.SeatHold;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Seat holds reserve seats for a limited time before they are booked. A hold claims
+ * its seats in the in-memory seat occupancy up front, so confirming it only inserts
+ * the bookings. Holds live in memory only and are expired by a timer wheel.
+ */
+@Service
+public class SeatHoldService {
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private HashedTimerWheel seatHoldExpiryWheel;
+
+    @Autowired
+    private ServiceMetrics serviceMetrics;
+
+    @Value("${popcorn-palace.holds.ttl:10m}")
+    private Duration holdTtl = Duration.ofMinutes(10);
+
+    private final ConcurrentHashMap<UUID, ActiveHold> activeHolds = new ConcurrentHashMap<>();
+
+    public SeatHold holdSeats(Long showtimeId, SeatHold request) {
+        serviceMetrics.timeBookingValidation(() -> bookingService.validateSeatSelection(showtimeId,
+                request.getUserId(), request.getSeatNumbers()));
+        List<Integer> seatNumbers = List.copyOf(request.getSeatNumbers());
+        bookingService.claimSeats(showtimeId, seatNumbers);
+
+        ActiveHold hold = new ActiveHold(UUID.randomUUID(), showtimeId, request.getUserId(), seatNumbers,
+                Instant.now().plus(holdTtl));
+        // Scheduled before the hold is published, so that confirm and release always find its timeout
+        hold.timeout = seatHoldExpiryWheel.schedule(() -> expire(hold), holdTtl);
+        activeHolds.put(hold.holdId, hold);
+        if (hold.state.get() != HoldState.ACTIVE) {
+            // Expired before it was published
+            activeHolds.remove(hold.holdId);
+        }
+        serviceMetrics.countSeatHoldCreated();
+        return hold.toSeatHold();
+    }
+
+    public List<Booking> confirmHold(Long showtimeId, UUID holdId) {
+        ActiveHold hold = findActiveHold(showtimeId, holdId);
+        // The showtime may have been deleted while the seats were held
+        bookingService.validateSeatSelection(showtimeId, hold.userId, hold.seatNumbers);
+        // Keeps release and expiry away from the seats while they are saved
+        take(hold, HoldState.CONFIRMING);
+        List<Booking> bookings;
+        try {
+            bookings = bookingService.saveClaimedSeats(showtimeId, hold.userId, hold.seatNumbers);
+        } catch (RuntimeException error) {
+            // saveClaimedSeats freed the seats, so the hold is over and the seats can be held again
+            hold.state.set(HoldState.RELEASED);
+            discard(hold);
+            throw error;
+        }
+        hold.state.set(HoldState.CONFIRMED);
+        discard(hold);
+        serviceMetrics.countSeatHoldConfirmed();
+        return bookings;
+    }
+
+    public void releaseHold(Long showtimeId, UUID holdId) {
+        ActiveHold hold = findActiveHold(showtimeId, holdId);
+        take(hold, HoldState.RELEASED);
+        discard(hold);
+        bookingService.releaseSeats(showtimeId, hold.seatNumbers);
+        serviceMetrics.countSeatHoldReleased();
+    }
+
+    public int activeHoldCount() {
+        return activeHolds.size();
+    }
+
+    private ActiveHold findActiveHold(Long showtimeId, UUID holdId) {
+        ActiveHold hold = activeHolds.get(holdId);
+        if (hold == null || !hold.showtimeId.equals(showtimeId) || hold.state.get() != HoldState.ACTIVE) {
+            throw new NotFoundException("There is no active hold with the given holdId: " + holdId);
+        }
+        return hold;
+    }
+
+    /**
+     * Moves an active hold out of the active state. Only one of confirm, release and
+     * expiry can win, the others see the hold as gone.
+     */
+    private void take(ActiveHold hold, HoldState nextState) {
+        if (!hold.state.compareAndSet(HoldState.ACTIVE, nextState)) {
+            throw new NotFoundException("There is no active hold with the given holdId: " + hold.holdId);
+        }
+    }
+
+    private void discard(ActiveHold hold) {
+        activeHolds.remove(hold.holdId);
+        hold.timeout.cancel();
+    }
+
+    private void expire(ActiveHold hold) {
+        if (hold.state.compareAndSet(HoldState.ACTIVE, HoldState.EXPIRED)) {
+            bookingService.releaseSeats(hold.showtimeId, hold.seatNumbers);
+            serviceMetrics.countSeatHoldExpired();
+            activeHolds.remove(hold.holdId);
+        }
+    }
+
+    private enum HoldState {
+        ACTIVE, CONFIRMING, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    private static final class ActiveHold {
+        private final UUID holdId;
+        private final Long showtimeId;
+        private final String userId;
+        private final List<Integer> seatNumbers;
+        private final Instant expiresAt;
+        private final AtomicReference<HoldState> state = new AtomicReference<>(HoldState.ACTIVE);
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private ActiveHold(UUID holdId, Long showtimeId, String userId, List<Integer> seatNumbers,
+                Instant expiresAt) {
+            this.holdId = holdId;
+            this.showtimeId = showtimeId;
+            this.userId = userId;
+            this.seatNumbers = seatNumbers;
+            this.expiresAt = expiresAt;
+        }
+
+        private SeatHold toSeatHold() {
+            SeatHold seatHold = new SeatHold();
+            seatHold.setHoldId(holdId);
+            seatHold.setShowtimeId(showtimeId);
+            seatHold.setUserId(userId);
+            seatHold.setSeatNumbers(seatNumbers);
+            seatHold.setExpiresAt(expiresAt);
+            return seatHold;
+        }
+    }
+}
@@ -1,20 +1,45 @@
 package com.att.tdp.popcorn_palace.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex.Reservation;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.config.ReadFromReplica;
 import com.att.tdp.popcorn_palace.exception.NotFoundException;
-import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.SeatAvailability;
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeFilter;
+import com.att.tdp.popcorn_palace.model.ShowTimeStats;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
 import com.att.tdp.popcorn_palace.repository.IBookingRepository;
 import com.att.tdp.popcorn_palace.repository.IMovieRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ShowTimeService {
@@ -24,42 +49,162 @@ public class ShowTimeService {
     private IMovieRepository movieRepository;
     @Autowired
     private IBookingRepository bookingRepository;
+    @Autowired
+    private SeatOccupancy seatOccupancy;
+    @Autowired
+    private ShowTimeIntervalIndex showTimeIndex;
+    @Autowired
+    private ServiceMetrics serviceMetrics;
+    @Autowired
+    private MovieCache movieCache;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private ShowTimeRegistry showTimeRegistry;
+    @Autowired
+    private SalesCounters salesCounters;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${popcorn-palace.deletes.chunk-size:1000}")
+    private int deleteChunkSize = 1000;
+
+    // Loaded before the first booking arrives so that it doesn't wait for the whole schedule
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadShowTimeRegistry() {
+        showTimeRegistry.load(showTimeRepository::findAllSummaries);
+    }
+
+    // Corrects counters that drifted, e.g. through bookings written to the database directly
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${popcorn-palace.stats.reconcile-interval:5m}",
+            initialDelayString = "${popcorn-palace.stats.reconcile-interval:5m}")
+    public void reconcileSalesCounters() {
+        salesCounters.reconcile(showTimeRepository::findAllSales);
+    }
 
     public List<ShowTime> getAllShowTimes() {
         return showTimeRepository.findAll();
     }
 
+    @ReadFromReplica
+    public KeysetPage<ShowTime> getShowTimesPage(Long after, int limit) {
+        KeysetPage.validateLimit(limit);
+        List<ShowTime> showTimes = showTimeRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after,
+                Limit.of(limit + 1));
+        return KeysetPage.of(showTimes, limit, ShowTime::getId);
+    }
+
+    /**
+     * Keyset paged search ordered by startTime and then id. The cursor is the startTime
+     * and id of the last showtime of the previous page, joined by an underscore.
+     */
+    @ReadFromReplica
+    public KeysetPage<ShowTimeSummary> searchShowTimes(ShowTimeFilter filter, String after, int limit) {
+        KeysetPage.validateLimit(limit);
+        if (filter.getFrom() != null && filter.getTo() != null && !filter.getFrom().isBefore(filter.getTo())) {
+            throw new IllegalArgumentException("from must be earlier than to");
+        }
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null
+                && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new IllegalArgumentException("minPrice can't be greater than maxPrice");
+        }
+        Instant afterStartTime = null;
+        Long afterId = null;
+        if (after != null) {
+            int separator = after.lastIndexOf('_');
+            try {
+                afterStartTime = Instant.parse(after.substring(0, separator));
+                afterId = Long.parseLong(after.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+        List<ShowTimeSummary> showTimes = showTimeRepository.search(filter, afterStartTime, afterId, limit + 1);
+        return KeysetPage.of(showTimes, limit, showTime -> showTime.getStartTime() + "_" + showTime.getId());
+    }
+
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public void streamAllShowTimes(Consumer<ShowTime> consumer) {
+        try (Stream<ShowTime> showTimes = showTimeRepository.streamAll()) {
+            showTimes.forEach(showTime -> {
+                consumer.accept(showTime);
+                entityManager.detach(showTime);
+            });
+        }
+    }
+
+    @ReadFromReplica
     public ShowTime getShowTimeById(Long showtimeId) {
         return showTimeRepository.findById(showtimeId)
                 .orElseThrow(() -> new NotFoundException("There is no showtime with the given id: " + showtimeId));
     }
 
+    /**
+     * Served from the in-memory seat occupancy; the database is only hit the first
+     * time a showtime's seats are read.
+     */
+    public SeatAvailability getSeatAvailability(Long showtimeId, String encoding) {
+        if (!seatOccupancy.isLoaded(showtimeId) && !showTimeRepository.existsById(showtimeId)) {
+            throw new NotFoundException("There is no showtime with the given id: " + showtimeId);
+        }
+        long[] seats = seatOccupancy.snapshot(showtimeId, bookingRepository::findByShowtimeId);
+        return SeatAvailability.of(showtimeId, seatOccupancy.getMaxSeatNumber(), seats, encoding);
+    }
+
+    /**
+     * Served from the in-memory sales counters without counting the showtime's bookings.
+     */
+    public ShowTimeStats getShowTimeStats(Long showtimeId) {
+        SalesCounters.ShowTimeCounters counters = salesCounters.findShowTime(showtimeId,
+                showTimeRepository::findAllSales);
+        if (counters == null) {
+            throw new NotFoundException("There is no showtime with the given id: " + showtimeId);
+        }
+        return new ShowTimeStats(showtimeId, counters.movieId(), seatOccupancy.getMaxSeatNumber(),
+                counters.seatsSold(), counters.revenue());
+    }
+
     public ShowTime addShowTime(ShowTime showTime) {
         validateShowTime(showTime);
-        List<ShowTime> overlappingShowTimes = showTimeRepository.findOverlappingShowTimes(
-                showTime.getTheater(), showTime.getStartTime(), showTime.getEndTime());
-        if (!overlappingShowTimes.isEmpty()) {
+        Reservation reservation = serviceMetrics.timeAddOverlapCheck(() -> showTimeIndex.tryReserve(
+                showTime.getTheater(), showTime.getStartTime(), showTime.getEndTime(), null,
+                showTimeRepository::findByTheater));
+        if (reservation == null) {
             throw new DataIntegrityViolationException(
                     "The showTime you are trying to add overlaps with an existing showTime");
         }
-        return showTimeRepository.save(showTime);
+        ShowTime savedShowTime;
+        try {
+            savedShowTime = showTimeRepository.save(showTime);
+        } catch (RuntimeException error) {
+            showTimeIndex.cancel(reservation);
+            throw error;
+        }
+        showTimeIndex.confirm(reservation, savedShowTime);
+        // Counted before it can be booked, a booking validated against the registry then always finds its counters
+        salesCounters.register(savedShowTime.getId(), savedShowTime.getMovieId(), savedShowTime.getPrice());
+        showTimeRegistry.register(savedShowTime.getId(), savedShowTime.getStartTime());
+        catalogVersions.changed(Catalog.SHOWTIMES);
+        return savedShowTime;
     }
 
     public void updateShowTime(Long showTimeId, ShowTime updatedShowTime) {
         ShowTime existingShowTime = showTimeRepository.findById(showTimeId)
                 .orElseThrow(
                         () -> new NotFoundException("There is no showTime with the given Id '" + showTimeId + "'"));
+        String previousTheater = existingShowTime.getTheater();
 
         if (updatedShowTime.getMovieId() != null) {
             if (updatedShowTime.getMovieId() <= 0) {
                 throw new IllegalArgumentException("movieId must be a valid id - greater than 0");
             }
-            movieRepository.findById(updatedShowTime.getMovieId())
+            movieCache.findById(updatedShowTime.getMovieId(), movieRepository::findById)
                     .orElseThrow(() -> new NotFoundException(
                             "There is no movie with the given id '" + updatedShowTime.getMovieId() + "'"));
             existingShowTime.setMovieId(updatedShowTime.getMovieId());
         }
-        Movie updatedMovie = movieRepository.findById(existingShowTime.getMovieId()).orElse(null);
+        Movie updatedMovie = movieCache.findById(existingShowTime.getMovieId(), movieRepository::findById).orElse(null);
 
         if (updatedShowTime.getTheater() != null && !updatedShowTime.getTheater().trim().isEmpty()) {
             existingShowTime.setTheater(updatedShowTime.getTheater());
@@ -88,29 +233,84 @@ public class ShowTimeService {
                         "The duration of a showtime must be equal or greater than the movie's duration");
             }
         }
-        List<ShowTime> overlappingShowTimes = showTimeRepository.findOverlappingShowTimes(
-                existingShowTime.getTheater(), existingShowTime.getStartTime(), existingShowTime.getEndTime());
-        if (!overlappingShowTimes.isEmpty()
-                && overlappingShowTimes.stream().anyMatch(foundShowTime -> !foundShowTime.getId().equals(showTimeId))) {
+        Reservation reservation = serviceMetrics.timeUpdateOverlapCheck(() -> showTimeIndex.tryReserve(
+                existingShowTime.getTheater(), existingShowTime.getStartTime(), existingShowTime.getEndTime(),
+                showTimeId, showTimeRepository::findByTheater));
+        if (reservation == null) {
             throw new DataIntegrityViolationException("The updated showTime overlaps with an existing showTime");
         }
 
-        showTimeRepository.save(existingShowTime);
+        try {
+            showTimeRepository.save(existingShowTime);
+        } catch (RuntimeException error) {
+            showTimeIndex.cancel(reservation);
+            throw error;
+        }
+        showTimeIndex.remove(showTimeId, previousTheater);
+        showTimeIndex.confirm(reservation, existingShowTime);
+        showTimeRegistry.register(showTimeId, existingShowTime.getStartTime());
+        salesCounters.register(showTimeId, existingShowTime.getMovieId(), existingShowTime.getPrice());
+        catalogVersions.changed(Catalog.SHOWTIMES);
     }
 
-    public void deleteShowTimeById(Long showTimeId) {
+    public int deleteShowTimeById(Long showTimeId) {
         ShowTime showTime = showTimeRepository.findById(showTimeId).orElseThrow(
                 () -> new NotFoundException("There is no showTime with the given id '" + showTimeId + "'"));
-        List<Booking> showTimeBookings = bookingRepository.findByShowtimeId(showTimeId);
-        bookingRepository.deleteAll(showTimeBookings);
+        int deletedBookings = deleteBookingsOf(List.of(showTimeId));
         showTimeRepository.delete(showTime);
+        evictShowTimes(List.of(showTime));
+        return deletedBookings;
+    }
+
+    /**
+     * Deletes the showtimes and their bookings with set-based statements and returns
+     * the number of bookings deleted.
+     */
+    public int deleteShowTimes(List<ShowTime> showTimes) {
+        int deletedBookings = deleteShowTimeRows(showTimes.stream().map(ShowTime::getId).toList());
+        evictShowTimes(showTimes);
+        return deletedBookings;
+    }
+
+    /**
+     * Deletes the rows of the given showtimes and of their bookings in chunks of
+     * deleteChunkSize, each in its own short transaction. In-memory state is left as is.
+     */
+    public int deleteShowTimeRows(List<Long> showTimeIds) {
+        int deletedBookings = 0;
+        for (int from = 0; from < showTimeIds.size(); from += deleteChunkSize) {
+            List<Long> chunk = showTimeIds.subList(from, Math.min(from + deleteChunkSize, showTimeIds.size()));
+            deletedBookings += deleteBookingsOf(chunk);
+            showTimeRepository.deleteByIdIn(chunk);
+        }
+        return deletedBookings;
+    }
+
+    public void evictShowTimes(List<ShowTime> showTimes) {
+        for (ShowTime showTime : showTimes) {
+            showTimeIndex.remove(showTime.getId(), showTime.getTheater());
+            seatOccupancy.evict(showTime.getId());
+            showTimeRegistry.remove(showTime.getId());
+            salesCounters.remove(showTime.getId());
+        }
+        catalogVersions.changed(Catalog.SHOWTIMES);
+    }
+
+    private int deleteBookingsOf(List<Long> showTimeIds) {
+        int deletedBookings = 0;
+        int deletedChunk;
+        do {
+            deletedChunk = bookingRepository.deleteChunkByShowtimeIdIn(showTimeIds, deleteChunkSize);
+            deletedBookings += deletedChunk;
+        } while (deletedChunk == deleteChunkSize);
+        return deletedBookings;
     }
 
-    private void validateShowTime(ShowTime showTime) {
+    void validateShowTime(ShowTime showTime) {
         if (showTime.getMovieId() == null || showTime.getMovieId() <= 0) {
             throw new IllegalArgumentException("movieId is required and must be a valid id");
         }
-        Movie existingMovie = movieRepository.findById(showTime.getMovieId())
+        Movie existingMovie = movieCache.findById(showTime.getMovieId(), movieRepository::findById)
                 .orElseThrow(() -> new IllegalArgumentException("Movie with the given id does not exist"));
         if (showTime.getTheater() == null || showTime.getTheater().trim().isEmpty()) {
             throw new IllegalArgumentException("Theater is required and can't be empty");
@@ -0,0 +1,25 @@
+CREATE TABLE IF NOT EXISTS movie (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    genre VARCHAR(255),
+    duration INTEGER,
+    rating DOUBLE PRECISION,
+    release_year INTEGER,
+    CONSTRAINT uk_movie_title UNIQUE (title)
+);
+
+CREATE TABLE IF NOT EXISTS show_time (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    movie_id BIGINT NOT NULL,
+    theater VARCHAR(255),
+    start_time TIMESTAMP(6) WITH TIME ZONE,
+    end_time TIMESTAMP(6) WITH TIME ZONE,
+    price DOUBLE PRECISION
+);
+
+CREATE TABLE IF NOT EXISTS booking (
+    id UUID NOT NULL PRIMARY KEY,
+    showtime_id BIGINT,
+    seat_number INTEGER,
+    user_id VARCHAR(255)
+);
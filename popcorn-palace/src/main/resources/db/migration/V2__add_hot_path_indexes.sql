@@ -0,0 +1,10 @@
+-- findByShowtimeIdAndSeatNumber / findByShowtimeId, and the last line of defence against double booking
+ALTER TABLE booking ADD CONSTRAINT uk_booking_showtime_seat UNIQUE (showtime_id, seat_number);
+
+CREATE INDEX ix_booking_user_id ON booking (user_id);
+
+-- findByTheater and overlap checks within a theater
+CREATE INDEX ix_show_time_theater_start_end ON show_time (theater, start_time, end_time);
+
+-- findByMovieId for movie updates and cascade deletes
+CREATE INDEX ix_show_time_movie_id ON show_time (movie_id);
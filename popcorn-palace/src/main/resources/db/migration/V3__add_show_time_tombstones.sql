@@ -0,0 +1,4 @@
+-- Set when the showtime's movie was deleted asynchronously, the row is removed later by the reclaimer
+ALTER TABLE show_time ADD COLUMN deleted BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX ix_show_time_deleted ON show_time (deleted);
@@ -0,0 +1,9 @@
+-- GET /showtimes/search pages in (start_time, id) order, this serves searches by start-time window alone
+CREATE INDEX ix_show_time_start_id ON show_time (start_time, id);
+
+-- Searches by movie, and still a prefix match for findByMovieId
+DROP INDEX ix_show_time_movie_id;
+CREATE INDEX ix_show_time_movie_start_id ON show_time (movie_id, start_time, id);
+
+-- Searches by theater use ix_show_time_theater_start_end. Price is only filtered on,
+-- a range over it is rarely selective enough for an index to pay off.
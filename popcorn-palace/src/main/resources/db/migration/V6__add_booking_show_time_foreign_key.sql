@@ -0,0 +1,6 @@
+-- Bookings left behind by a showtime deleted while they were being written
+DELETE FROM booking WHERE NOT EXISTS (SELECT 1 FROM show_time WHERE show_time.id = booking.showtime_id);
+
+-- Showtimes are deleted after their bookings in chunks, this removes the ones inserted in between
+ALTER TABLE booking ADD CONSTRAINT fk_booking_show_time
+    FOREIGN KEY (showtime_id) REFERENCES show_time (id) ON DELETE CASCADE;
@@ -0,0 +1,108 @@
+package com.att.tdp.popcorn_palace;
+
+import com.att.tdp.popcorn_palace.config.ConnectionLimitingDataSource;
+import com.att.tdp.popcorn_palace.config.VirtualThreadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ConnectionLimitingTests {
+
+    @Mock
+    private DataSource pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+    }
+
+    @Test
+    void connectionBeyondTheLimitWaitsAndTimesOutTest() throws SQLException {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(pool, 2, Duration.ofMillis(100));
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        long startedAt = System.nanoTime();
+        SQLTransientConnectionException exception = assertThrows(SQLTransientConnectionException.class,
+                dataSource::getConnection);
+
+        assertTrue(System.nanoTime() - startedAt >= Duration.ofMillis(100).toNanos());
+        assertEquals("No database connection became available within 100ms", exception.getMessage());
+        verify(pool, times(2)).getConnection();
+    }
+
+    @Test
+    void closingConnectionReturnsItsPermitOnceTest() throws SQLException {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(pool, 1, Duration.ofMillis(100));
+        Connection connection = dataSource.getConnection();
+        assertEquals(0, dataSource.availablePermits());
+
+        connection.close();
+        connection.close();
+
+        assertEquals(1, dataSource.availablePermits());
+        dataSource.getConnection();
+        assertEquals(0, dataSource.availablePermits());
+    }
+
+    @Test
+    void failedConnectionReturnsItsPermitTest() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLException("pool exhausted"));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(pool, 1, Duration.ofMillis(100));
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        assertEquals(1, dataSource.availablePermits());
+    }
+
+    @Test
+    void postProcessorLimitsOnlyPoolsTest() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("popcorn-palace.datasource.max-concurrent-connections", "4");
+        BeanPostProcessor postProcessor = VirtualThreadConfig.connectionLimitingDataSourcePostProcessor(environment);
+        DelegatingDataSource routing = new DelegatingDataSource(pool);
+        Object notADataSource = new Object();
+
+        Object limited = postProcessor.postProcessAfterInitialization(pool, "dataSource");
+
+        assertTrue(limited instanceof ConnectionLimitingDataSource);
+        assertEquals(4, ((ConnectionLimitingDataSource) limited).availablePermits());
+        assertSame(pool, ((ConnectionLimitingDataSource) limited).getTargetDataSource());
+        assertSame(routing, postProcessor.postProcessAfterInitialization(routing, "routingDataSource"));
+        assertSame(notADataSource, postProcessor.postProcessAfterInitialization(notADataSource, "other"));
+    }
+
+    @Test
+    void postProcessorDefaultsToPoolSizeTest() {
+        BeanPostProcessor postProcessor = VirtualThreadConfig.connectionLimitingDataSourcePostProcessor(
+                new MockEnvironment());
+
+        Object limited = postProcessor.postProcessAfterInitialization(pool, "dataSource");
+
+        assertEquals(10, ((ConnectionLimitingDataSource) limited).availablePermits());
+    }
+}
@@ -0,0 +1,79 @@
+package com.att.tdp.popcorn_palace;
+
+import com.att.tdp.popcorn_palace.config.ReplicaRoutingDataSource;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Two in-memory H2 databases stand in for the primary and its replica, with replication left out
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "popcorn-palace.datasource.replica.url=jdbc:h2:mem:replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "popcorn-palace.datasource.replica.username=sa",
+        "popcorn-palace.datasource.replica.read-your-writes-window=1m" })
+@AutoConfigureMockMvc
+class ReplicaRoutingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @BeforeEach
+    void setUp() {
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.update("DELETE FROM movie");
+        replica.update("INSERT INTO movie (id, title, genre, duration, rating, release_year) "
+                + "VALUES (1000, 'Replicated', 'Drama', 100, 7.5, 2020)");
+    }
+
+    @Test
+    void readsFollowTheSessionThatWroteTest() throws Exception {
+        Cookie readPrimaryUntil = mockMvc.perform(post("/movies").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Written\",\"genre\":\"Drama\",\"duration\":100,\"rating\":7.5,\"releaseYear\":2020}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists("read-primary-until"))
+                .andReturn().getResponse().getCookie("read-primary-until");
+
+        mockMvc.perform(get("/movies/all").param("limit", "10"))
+                .andExpect(jsonPath("$.items[*].title", contains("Replicated")));
+        mockMvc.perform(get("/movies/all").param("limit", "10").cookie(readPrimaryUntil))
+                .andExpect(jsonPath("$.items[*].title", contains("Written")));
+        // Cached full listings are always loaded from the primary
+        mockMvc.perform(get("/movies/all"))
+                .andExpect(jsonPath("$[*].title", contains("Written")));
+    }
+
+    @Test
+    void replicaReadLeavesNothingOnTheThreadTest() throws Exception {
+        mockMvc.perform(get("/movies/all").param("limit", "10"))
+                .andExpect(jsonPath("$.items[*].title", contains("Replicated")));
+
+        // MockMvc serves the request on this thread, a pooled request thread must not keep the mark
+        ThreadLocal<?> replicaRead = (ThreadLocal<?>) ReflectionTestUtils.getField(ReplicaRoutingDataSource.class,
+                "REPLICA_READ");
+        assertNull(replicaRead.get());
+    }
+}
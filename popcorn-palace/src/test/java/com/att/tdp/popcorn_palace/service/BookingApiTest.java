@@ -1,28 +1,66 @@
 package com.att.tdp.popcorn_palace.service;
 
+import com.att.tdp.popcorn_palace.cache.IdempotencyStore;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.concurrent.TokenBuckets;
+import com.att.tdp.popcorn_palace.exception.IdempotencyKeyReuseException;
+import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.exception.TooManyRequestsException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.BatchBooking;
 import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.BookingTicket;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import com.att.tdp.popcorn_palace.model.TimeOrderedUuidGenerator;
 import com.att.tdp.popcorn_palace.repository.IBookingRepository;
 import com.att.tdp.popcorn_palace.repository.IMovieRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.mockito.junit.jupiter.MockitoSettings;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import jakarta.persistence.EntityManager;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +76,26 @@ class BookingApiTest {
     @Mock
     private IMovieRepository movieRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private SeatOccupancy seatOccupancy = new SeatOccupancy();
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(meterRegistry);
+
+    @Spy
+    private ShowTimeRegistry showTimeRegistry = new ShowTimeRegistry();
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore(Duration.ofMinutes(10), 1000);
+
     @InjectMocks
     private BookingService bookingService;
 
@@ -57,8 +115,8 @@ class BookingApiTest {
         showTime.setId(1L);
         showTime.setMovieId(1L);
         showTime.setTheater("Theater 1");
-        showTime.setStartTime(Instant.now());
-        showTime.setEndTime(Instant.now().plusSeconds(3*60*60));
+        showTime.setStartTime(Instant.now().plusSeconds(60*60));
+        showTime.setEndTime(Instant.now().plusSeconds(4*60*60));
         showTime.setPrice(10.0);
 
         booking = new Booking();
@@ -69,7 +127,9 @@ class BookingApiTest {
         when(movieRepository.save(movie)).thenReturn(movie);
         when(showTimeRepository.save(showTime)).thenReturn(showTime);
         when(bookingRepository.save(booking)).thenReturn(booking);
-        when(showTimeRepository.existsById(showTime.getId())).thenReturn(true);
+        when(showTimeRepository.findAllSummaries()).thenReturn(List.of(new ShowTimeSummary(showTime.getId(),
+                showTime.getMovieId(), showTime.getTheater(), showTime.getStartTime(), showTime.getEndTime(),
+                showTime.getPrice())));
         when(bookingRepository.findByShowtimeIdAndSeatNumber(showTime.getId(), booking.getSeatNumber())).thenReturn(Optional.of(booking));
         movieRepository.save(movie);
         showTimeRepository.save(showTime);
@@ -96,7 +156,6 @@ class BookingApiTest {
         newBooking.setSeatNumber(5);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -105,13 +164,27 @@ class BookingApiTest {
         assertEquals("There is no showtime with the given showtimeId: 999", exception.getMessage());
     }
 
+    @Test
+    void createBookingForStartedShowTimeTest() {
+        showTimeRegistry.register(2L, Instant.now().minusSeconds(60));
+        Booking newBooking = seatBooking(5, booking.getUserId());
+        newBooking.setShowtimeId(2L);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            bookingService.createBooking(newBooking);
+        });
+
+        assertEquals("The showtime has already started and can't be booked", exception.getMessage());
+        verify(showTimeRepository, never()).existsById(any());
+        verify(bookingRepository, never()).findByShowtimeId(2L);
+    }
+
     @Test
     void createBookingWithNoShowTimeIdTest() {
         Booking newBooking = new Booking();
         newBooking.setSeatNumber(5);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -127,7 +200,6 @@ class BookingApiTest {
         newBooking.setSeatNumber(5);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -143,7 +215,7 @@ class BookingApiTest {
         newBooking.setSeatNumber(3);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(bookingRepository.findByShowtimeIdAndSeatNumber(newBooking.getShowtimeId(), newBooking.getSeatNumber())).thenReturn(Optional.of(booking));
+        when(bookingRepository.findByShowtimeId(newBooking.getShowtimeId())).thenReturn(Arrays.asList(booking));
 
         DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -151,13 +223,286 @@ class BookingApiTest {
         assertEquals("The selected seat is already taken for this showtime", exception.getMessage());
     }
 
+    @Test
+    void createBookingSameSeatConcurrentlyOnlyOneWinsTest() throws Exception {
+        int contenders = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(contenders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < contenders; i++) {
+            Booking newBooking = new Booking();
+            newBooking.setShowtimeId(1L);
+            newBooking.setSeatNumber(7);
+            newBooking.setUserId(UUID.randomUUID().toString());
+            when(bookingRepository.save(newBooking)).thenReturn(newBooking);
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookingService.createBooking(newBooking);
+                    return true;
+                } catch (DataIntegrityViolationException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                winners++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, winners);
+        verify(bookingRepository, never()).findByShowtimeIdAndSeatNumber(1L, 7);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createBookingThroughPartitionsTest() throws Exception {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        when(bookingRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        BookingCoordinator coordinator = new BookingCoordinator(2, 64, 16, seatOccupancy, bookingRepository,
+                transactionTemplate, null, salesCounters, serviceMetrics);
+        coordinator.start();
+        ReflectionTestUtils.setField(bookingService, "bookingCoordinator", coordinator);
+        clearInvocations(bookingRepository);
+        int contenders = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(contenders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < contenders; i++) {
+            Booking newBooking = new Booking();
+            newBooking.setShowtimeId(1L);
+            // Half of them fight over seat 7, the others book seats of their own
+            newBooking.setSeatNumber(i % 2 == 0 ? 7 : 10 + i);
+            newBooking.setUserId(UUID.randomUUID().toString());
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return bookingService.createBooking(newBooking).getSeatNumber();
+                } catch (DataIntegrityViolationException e) {
+                    return 0;
+                }
+            }));
+        }
+        start.countDown();
+        List<Integer> bookedSeats = new ArrayList<>();
+        for (Future<Integer> result : results) {
+            bookedSeats.add(result.get());
+        }
+        executor.shutdown();
+        coordinator.close();
+
+        assertEquals(1, bookedSeats.stream().filter(seat -> seat == 7).count());
+        assertEquals(8, bookedSeats.stream().filter(seat -> seat > 10).count());
+        verify(bookingRepository, never()).save(any());
+        assertEquals(9.0, meterRegistry.get("booking.partition.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bookingsSubmittedWhilePartitionsCloseAllCompleteTest() throws Exception {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        when(bookingRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        BookingCoordinator coordinator = new BookingCoordinator(1, 1024, 16, seatOccupancy, bookingRepository,
+                transactionTemplate, null, salesCounters, serviceMetrics);
+        coordinator.start();
+        int producers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch started = new CountDownLatch(producers);
+        List<Future<List<CompletableFuture<Booking>>>> submitted = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int firstSeat = i * 200 + 1;
+            submitted.add(executor.submit(() -> {
+                List<CompletableFuture<Booking>> results = new ArrayList<>();
+                started.countDown();
+                for (int seat = firstSeat; seat < firstSeat + 200; seat++) {
+                    Booking newBooking = new Booking();
+                    newBooking.setShowtimeId(1L);
+                    newBooking.setSeatNumber(seat);
+                    newBooking.setUserId(UUID.randomUUID().toString());
+                    results.add(coordinator.submit(newBooking));
+                }
+                return results;
+            }));
+        }
+        started.await();
+        coordinator.close();
+
+        // Every booking is either saved or failed, none is left waiting on a stopped partition
+        for (Future<List<CompletableFuture<Booking>>> results : submitted) {
+            assertTrue(results.get().stream().allMatch(CompletableFuture::isDone));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createBookingAsynchronouslyTest() throws Exception {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        when(bookingRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            ((List<Booking>) invocation.getArgument(0)).forEach(BookingApiTest::withId);
+            return invocation.getArgument(0);
+        });
+        BookingCoordinator coordinator = new BookingCoordinator(1, 64, 16, seatOccupancy, bookingRepository,
+                transactionTemplate, null, salesCounters, serviceMetrics);
+        AsyncBookingPipeline pipeline = new AsyncBookingPipeline(64, 16, Duration.ofMinutes(10), 1000,
+                bookingService, coordinator, idempotencyStore, serviceMetrics);
+        coordinator.start();
+        pipeline.start();
+
+        Booking invalidBooking = new Booking();
+        invalidBooking.setShowtimeId(1L);
+        invalidBooking.setSeatNumber(0);
+        invalidBooking.setUserId(UUID.randomUUID().toString());
+        BookingTicket first = pipeline.submit(seat(7), "key-1");
+        BookingTicket retry = pipeline.submit(seat(7), "key-1");
+        BookingTicket second = pipeline.submit(seat(7));
+        BookingTicket invalid = pipeline.submit(invalidBooking);
+        assertEquals(BookingTicket.Status.PENDING, first.getStatus());
+        assertEquals(first.getTicketId(), retry.getTicketId());
+        for (int i = 0; i < 100 && pipeline.pendingCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+        pipeline.close();
+        coordinator.close();
+
+        BookingTicket confirmed = pipeline.getTicket(first.getTicketId());
+        assertEquals(BookingTicket.Status.CONFIRMED, confirmed.getStatus());
+        assertNotEquals(null, confirmed.getBookingId());
+        assertEquals("The selected seat is already taken for this showtime",
+                pipeline.getTicket(second.getTicketId()).getMessage());
+        assertEquals(BookingTicket.Status.REJECTED, pipeline.getTicket(invalid.getTicketId()).getStatus());
+        assertEquals("Seat number is required and must be greater than 0",
+                pipeline.getTicket(invalid.getTicketId()).getMessage());
+        assertThrows(NotFoundException.class, () -> pipeline.getTicket(UUID.randomUUID()));
+    }
+
+    @Test
+    void bookingsSubmittedWhilePipelineClosesAreAllDecidedTest() throws Exception {
+        BookingCoordinator coordinator = mock(BookingCoordinator.class);
+        when(coordinator.submit(any())).thenAnswer(
+                invocation -> CompletableFuture.completedFuture(withId(invocation.getArgument(0))));
+        AsyncBookingPipeline pipeline = new AsyncBookingPipeline(1024, 16, Duration.ofMinutes(10), 1000,
+                bookingService, coordinator, idempotencyStore, serviceMetrics);
+        pipeline.start();
+        int producers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch started = new CountDownLatch(producers);
+        List<Future<List<BookingTicket>>> submitted = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int firstSeat = i * 200 + 1;
+            submitted.add(executor.submit(() -> {
+                List<BookingTicket> tickets = new ArrayList<>();
+                started.countDown();
+                for (int seat = firstSeat; seat < firstSeat + 200; seat++) {
+                    try {
+                        tickets.add(pipeline.submit(seat(seat)));
+                    } catch (IllegalStateException closed) {
+                        break;
+                    }
+                }
+                return tickets;
+            }));
+        }
+        started.await();
+        pipeline.close();
+
+        // Every accepted booking is confirmed or rejected, none is left pending on a stopped validator
+        for (Future<List<BookingTicket>> tickets : submitted) {
+            for (BookingTicket ticket : tickets.get()) {
+                assertNotEquals(BookingTicket.Status.PENDING, pipeline.getTicket(ticket.getTicketId()).getStatus());
+            }
+        }
+        assertEquals(0, pipeline.pendingCount());
+        executor.shutdown();
+    }
+
+    @Test
+    void createBookingAsynchronouslyWhenQueueIsFullTest() {
+        BookingCoordinator coordinator = mock(BookingCoordinator.class);
+        // Not started, so nothing takes the queued bookings
+        AsyncBookingPipeline pipeline = new AsyncBookingPipeline(2, 16, Duration.ofMinutes(10), 1000,
+                bookingService, coordinator, idempotencyStore, serviceMetrics);
+
+        pipeline.submit(seat(7));
+        pipeline.submit(seat(8));
+
+        assertThrows(TooManyRequestsException.class, () -> pipeline.submit(seat(9)));
+        assertEquals(2, pipeline.pendingCount());
+        assertEquals(1.0, meterRegistry.get("booking.async.throttled").counter().count());
+    }
+
+    @Test
+    void createBookingBeyondUserRateLimitTest() {
+        // Slow enough that no token comes back during the test
+        BookingRateLimiter rateLimiter = new BookingRateLimiter(new TokenBuckets(0.001, 2, 1000),
+                new TokenBuckets(0.001, 100, 1000), serviceMetrics);
+
+        rateLimiter.admit("user-1", "10.0.0.1");
+        rateLimiter.admit("user-1", "10.0.0.1");
+
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.admit("user-1", "10.0.0.1"));
+        assertEquals("Too many bookings for this user, try again later", exception.getMessage());
+        rateLimiter.admit("user-2", "10.0.0.1");
+        assertEquals(1.0, meterRegistry.get("booking.rate.limited").tag("limit", "user").counter().count());
+    }
+
+    @Test
+    void createBookingBeyondClientRateLimitTest() {
+        BookingRateLimiter rateLimiter = new BookingRateLimiter(new TokenBuckets(0.001, 100, 1000),
+                new TokenBuckets(0.001, 3, 1000), serviceMetrics);
+
+        // A client making up user ids still runs out of its own allowance
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.admit(UUID.randomUUID().toString(), "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.admit(UUID.randomUUID().toString(), "10.0.0.1"));
+        rateLimiter.admit(UUID.randomUUID().toString(), "10.0.0.2");
+        assertEquals(1.0, meterRegistry.get("booking.rate.limited").tag("limit", "client").counter().count());
+    }
+
+    @Test
+    void rateLimitBucketsStayWithinMaxKeysTest() {
+        TokenBuckets buckets = new TokenBuckets(0.001, 1, 160);
+
+        for (int i = 0; i < 10_000; i++) {
+            buckets.tryAcquire("user-" + i);
+        }
+
+        assertTrue(buckets.size() <= 160);
+    }
+
+    @Test
+    void createBookingWithSeatNumberAboveCapacityTest() {
+        Booking newBooking = new Booking();
+        newBooking.setShowtimeId(1L);
+        newBooking.setSeatNumber(seatOccupancy.getMaxSeatNumber() + 1);
+        newBooking.setUserId(UUID.randomUUID().toString());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            bookingService.createBooking(newBooking);
+        });
+
+        assertEquals("Seat number can't be greater than " + seatOccupancy.getMaxSeatNumber(), exception.getMessage());
+    }
+
     @Test
     void createBookingWithNoSeatNumberTest() {
         Booking newBooking = new Booking();
         newBooking.setShowtimeId(1L);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -173,7 +518,6 @@ class BookingApiTest {
         newBooking.setSeatNumber(-5);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -188,7 +532,6 @@ class BookingApiTest {
         newBooking.setShowtimeId(1L);
         newBooking.setSeatNumber(5);
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -204,7 +547,6 @@ class BookingApiTest {
         newBooking.setSeatNumber(5);
         newBooking.setUserId("");
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(false);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             bookingService.createBooking(newBooking);
@@ -220,7 +562,6 @@ class BookingApiTest {
         newBooking.setSeatNumber(5);
         newBooking.setUserId(UUID.randomUUID().toString());
 
-        when(showTimeRepository.existsById(newBooking.getShowtimeId())).thenReturn(true);
         when(bookingRepository.save(newBooking)).thenReturn(newBooking);
 
         Booking createdBooking = bookingService.createBooking(newBooking);
@@ -228,5 +569,262 @@ class BookingApiTest {
         assertEquals(newBooking.getShowtimeId(), createdBooking.getShowtimeId());
         assertEquals(newBooking.getSeatNumber(), createdBooking.getSeatNumber());
         assertEquals(newBooking.getUserId(), createdBooking.getUserId());
+        verify(salesCounters, times(1)).recordSold(showTime.getId(), 1);
+    }
+
+    @Test
+    void createBookingsBatchSuccessfullyTest() {
+        BatchBooking batchBooking = new BatchBooking();
+        batchBooking.setShowtimeId(showTime.getId());
+        batchBooking.setUserId(UUID.randomUUID().toString());
+        batchBooking.setSeatNumbers(Arrays.asList(10, 11, 12));
+
+        when(bookingRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Booking> createdBookings = bookingService.createBookings(batchBooking);
+        assertEquals(3, createdBookings.size());
+        assertEquals(Integer.valueOf(10), createdBookings.get(0).getSeatNumber());
+        assertEquals(batchBooking.getUserId(), createdBookings.get(2).getUserId());
+        verify(bookingRepository, times(1)).saveAllAndFlush(anyList());
+        verify(showTimeRepository, never()).existsById(any());
+        verify(salesCounters, times(1)).recordSold(showTime.getId(), 3);
+    }
+
+    @Test
+    void createBookingsBatchRejectedByDatabaseReleasesSeatsTest() {
+        BatchBooking batchBooking = new BatchBooking();
+        batchBooking.setShowtimeId(showTime.getId());
+        batchBooking.setUserId(UUID.randomUUID().toString());
+        batchBooking.setSeatNumbers(Arrays.asList(10, 11, 12));
+        when(bookingRepository.saveAllAndFlush(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
+            bookingService.createBookings(batchBooking);
+        });
+
+        assertEquals("One of the selected seats is already taken for this showtime", exception.getMessage());
+        for (Integer seatNumber : batchBooking.getSeatNumbers()) {
+            assertTrue(seatOccupancy.tryClaim(showTime.getId(), seatNumber, showtimeId -> List.of()));
+        }
+        verify(salesCounters, never()).recordSold(any(), any(Integer.class));
+    }
+
+    @Test
+    void createBookingsBatchWithTakenSeatReservesNothingTest() {
+        when(bookingRepository.findByShowtimeId(showTime.getId())).thenReturn(Arrays.asList(booking));
+        BatchBooking batchBooking = new BatchBooking();
+        batchBooking.setShowtimeId(showTime.getId());
+        batchBooking.setUserId(UUID.randomUUID().toString());
+        batchBooking.setSeatNumbers(Arrays.asList(1, 2, booking.getSeatNumber()));
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
+            bookingService.createBookings(batchBooking);
+        });
+        assertEquals("Seat 3 is already taken for this showtime", exception.getMessage());
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+
+        Booking newBooking = new Booking();
+        newBooking.setShowtimeId(showTime.getId());
+        newBooking.setSeatNumber(1);
+        newBooking.setUserId(UUID.randomUUID().toString());
+        when(bookingRepository.save(newBooking)).thenReturn(newBooking);
+        assertEquals(newBooking, bookingService.createBooking(newBooking));
+    }
+
+    @Test
+    void createBookingsBatchWithDuplicateSeatsTest() {
+        BatchBooking batchBooking = new BatchBooking();
+        batchBooking.setShowtimeId(showTime.getId());
+        batchBooking.setUserId(UUID.randomUUID().toString());
+        batchBooking.setSeatNumbers(Arrays.asList(4, 5, 4));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            bookingService.createBookings(batchBooking);
+        });
+        assertEquals("Seat 4 was requested more than once", exception.getMessage());
+    }
+
+    @Test
+    void createBookingsBatchWithNoSeatsTest() {
+        BatchBooking batchBooking = new BatchBooking();
+        batchBooking.setShowtimeId(showTime.getId());
+        batchBooking.setUserId(UUID.randomUUID().toString());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            bookingService.createBookings(batchBooking);
+        });
+        assertEquals("Seat numbers are required and can't be empty", exception.getMessage());
+    }
+
+    @Test
+    void getBookingsPageTest() {
+        Booking secondBooking = new Booking();
+        secondBooking.setId(UUID.randomUUID());
+        booking.setId(UUID.randomUUID());
+        when(bookingRepository.findByOrderByIdAsc(Limit.of(2))).thenReturn(Arrays.asList(booking, secondBooking));
+
+        KeysetPage<Booking> page = bookingService.getBookingsPage(null, 1);
+        assertEquals(Arrays.asList(booking), page.getItems());
+        assertEquals(booking.getId().toString(), page.getNextCursor());
+    }
+
+    @Test
+    void bookingIdsAreTimeOrderedTest() {
+        // More ids than the 4096 a millisecond's counter holds, so most share a millisecond with the previous one
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(TimeOrderedUuidGenerator.next());
+        }
+        long millisecond = System.currentTimeMillis();
+        while (System.currentTimeMillis() == millisecond) {
+            Thread.onSpinWait();
+        }
+        ids.add(TimeOrderedUuidGenerator.next());
+
+        int sameMillisecond = 0;
+        for (int i = 1; i < ids.size(); i++) {
+            UUID previous = ids.get(i - 1);
+            UUID id = ids.get(i);
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            // Keyset pages compare ids in the database, which orders them by their bytes
+            assertTrue(previous.toString().compareTo(id.toString()) < 0);
+            assertTrue(previous.compareTo(id) < 0);
+            if (previous.getMostSignificantBits() >>> 16 == id.getMostSignificantBits() >>> 16) {
+                sameMillisecond++;
+            }
+        }
+        assertTrue(sameMillisecond > 0);
+        assertTrue(ids.get(ids.size() - 1).getMostSignificantBits() >>> 16 > millisecond);
+    }
+
+    @Test
+    void streamAllBookingsDetachesEachBookingTest() {
+        Booking secondBooking = new Booking();
+        when(bookingRepository.streamAll()).thenReturn(Stream.of(booking, secondBooking));
+
+        List<Booking> streamed = new ArrayList<>();
+        bookingService.streamAllBookings(streamed::add);
+
+        assertEquals(Arrays.asList(booking, secondBooking), streamed);
+        verify(entityManager, times(1)).detach(booking);
+        verify(entityManager, times(1)).detach(secondBooking);
+    }
+
+    @Test
+    void createBookingRecordsPhaseTimingsAndRejectionsTest() {
+        when(bookingRepository.findByShowtimeId(showTime.getId())).thenReturn(Arrays.asList(booking));
+        Booking takenSeatBooking = new Booking();
+        takenSeatBooking.setShowtimeId(showTime.getId());
+        takenSeatBooking.setSeatNumber(booking.getSeatNumber());
+        takenSeatBooking.setUserId(UUID.randomUUID().toString());
+        Booking invalidBooking = new Booking();
+        invalidBooking.setShowtimeId(showTime.getId());
+
+        assertThrows(DataIntegrityViolationException.class, () -> bookingService.createBooking(takenSeatBooking));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.createBooking(invalidBooking));
+
+        assertEquals(1.0, meterRegistry.get("booking.seat.conflicts").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.validation.rejections").counter().count());
+        assertEquals(1L, meterRegistry.get("booking.create.phase").tag("phase", "seat_lookup").timer().count());
+        assertEquals(0L, meterRegistry.get("booking.create.phase").tag("phase", "insert").timer().count());
+    }
+
+    @Test
+    void createBookingRetryWithIdempotencyKeyReturnsOriginalBookingTest() {
+        clearInvocations(bookingRepository);
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> withId(invocation.getArgument(0)));
+
+        Booking createdBooking = bookingService.createBooking(seatBooking(5, booking.getUserId()), "retry-key");
+        Booking retriedBooking = bookingService.createBooking(seatBooking(5, booking.getUserId()), "retry-key");
+
+        assertEquals(createdBooking.getId(), retriedBooking.getId());
+        verify(bookingRepository, times(1)).save(any(Booking.class));
+        verify(showTimeRepository, times(1)).findAllSummaries();
+    }
+
+    @Test
+    void createBookingReusingIdempotencyKeyForOtherSeatTest() {
+        clearInvocations(bookingRepository);
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> withId(invocation.getArgument(0)));
+        bookingService.createBooking(seatBooking(5, booking.getUserId()), "reused-key");
+
+        IdempotencyKeyReuseException exception = assertThrows(IdempotencyKeyReuseException.class, () -> {
+            bookingService.createBooking(seatBooking(6, booking.getUserId()), "reused-key");
+        });
+
+        assertEquals("The Idempotency-Key 'reused-key' was already used for a different request", exception.getMessage());
+        verify(bookingRepository, times(1)).save(any(Booking.class));
+    }
+
+    @Test
+    void createBookingFailureIsNotRememberedForIdempotencyKeyTest() {
+        when(showTimeRepository.findAllSummaries()).thenReturn(List.of());
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> withId(invocation.getArgument(0)));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            bookingService.createBooking(seatBooking(5, booking.getUserId()), "failed-key");
+        });
+        showTimeRegistry.register(showTime.getId(), showTime.getStartTime());
+        Booking createdBooking = bookingService.createBooking(seatBooking(5, booking.getUserId()), "failed-key");
+
+        assertNotEquals(null, createdBooking.getId());
+        assertThrows(IllegalArgumentException.class, () -> bookingService.createBooking(seatBooking(5, "user"), " "));
+    }
+
+    @Test
+    void createBookingConcurrentRetriesCoalesceTest() throws Exception {
+        clearInvocations(bookingRepository);
+        int retries = 8;
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return withId(invocation.getArgument(0));
+        });
+        // Counts the retries that reached the store while the first request is still saving
+        CountDownLatch retried = new CountDownLatch(retries - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(retries);
+        List<Future<Booking>> results = new ArrayList<>();
+        results.add(executor.submit(() -> bookingService.createBooking(seatBooking(5, booking.getUserId()), "slow-key")));
+        saving.await();
+        doAnswer(invocation -> {
+            retried.countDown();
+            return invocation.callRealMethod();
+        }).when(idempotencyStore).execute(any(), any(), any());
+        for (int i = 1; i < retries; i++) {
+            results.add(executor.submit(() -> bookingService.createBooking(seatBooking(5, booking.getUserId()), "slow-key")));
+        }
+        retried.await();
+        release.countDown();
+
+        UUID bookingId = results.get(0).get().getId();
+        for (Future<Booking> result : results) {
+            assertEquals(bookingId, result.get().getId());
+        }
+        executor.shutdown();
+        verify(bookingRepository, times(1)).save(any(Booking.class));
+    }
+
+    private Booking seatBooking(int seatNumber, String userId) {
+        Booking newBooking = new Booking();
+        newBooking.setShowtimeId(showTime.getId());
+        newBooking.setSeatNumber(seatNumber);
+        newBooking.setUserId(userId);
+        return newBooking;
+    }
+
+    private static Booking seat(int seatNumber) {
+        Booking newBooking = new Booking();
+        newBooking.setShowtimeId(1L);
+        newBooking.setSeatNumber(seatNumber);
+        newBooking.setUserId("84438967-f68f-4fa0-b620-0f08217e76af");
+        return newBooking;
+    }
+
+    private static Booking withId(Booking newBooking) {
+        newBooking.setId(UUID.randomUUID());
+        return newBooking;
     }
-}
\ No newline at end of file
+}
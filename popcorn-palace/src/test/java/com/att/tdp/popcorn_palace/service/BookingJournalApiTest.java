@@ -0,0 +1,278 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.journal.BookingJournal;
+import com.att.tdp.popcorn_palace.journal.BookingJournal.JournaledBooking;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
+import com.att.tdp.popcorn_palace.model.TimeOrderedUuidGenerator;
+import com.att.tdp.popcorn_palace.repository.IBookingRepository;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BookingJournalApiTest {
+    private static final int SEGMENT_SIZE = 160;
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private IBookingRepository bookingRepository;
+
+    @Mock
+    private IShowTimeRepository showTimeRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private SeatOccupancy seatOccupancy = new SeatOccupancy();
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(meterRegistry);
+
+    @Spy
+    private ShowTimeRegistry showTimeRegistry = new ShowTimeRegistry();
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    private BookingJournal journal;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        journal = new BookingJournal(directory, SEGMENT_SIZE);
+        journal.open();
+        when(showTimeRepository.findAllSummaries()).thenReturn(List.of(new ShowTimeSummary(1L, 1L, "Theater 1",
+                Instant.now().plus(Duration.ofDays(1)), Instant.now().plus(Duration.ofDays(1)).plusSeconds(7200), 20.0)));
+        doAnswer(invocation -> ((TransactionCallback<int[]>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void journaledBookingsAreReplayedUntilDrainedTest() throws Exception {
+        List<Booking> bookings = new ArrayList<>();
+        for (int seat = 1; seat <= 5; seat++) {
+            bookings.add(booking(1L, seat));
+            journal.append(bookings.get(seat - 1)).join();
+        }
+        reopen();
+
+        assertEquals(5, journal.pendingCount());
+        assertEquals(3, segmentCount());
+        List<JournaledBooking> pending = journal.takePending(3, Duration.ZERO);
+        assertEquals(bookings.subList(0, 3), pending.stream().map(JournaledBooking::booking).toList());
+        journal.markDrained(pending.get(2));
+        reopen();
+
+        assertEquals(bookings.subList(3, 5), journal.takePending(10, Duration.ZERO).stream()
+                .map(JournaledBooking::booking).toList());
+        assertEquals(2, segmentCount());
+    }
+
+    @Test
+    void tornRecordEndsTheJournalTest() throws Exception {
+        Booking first = booking(1L, 1);
+        journal.append(first).join();
+        journal.append(booking(1L, 2)).join();
+        journal.close();
+        try (RandomAccessFile segment = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            // The last byte of the second record's user id
+            segment.seek(2L * recordSize(first) - 1);
+            segment.write('X');
+        }
+        journal = new BookingJournal(directory, SEGMENT_SIZE);
+        journal.open();
+
+        assertEquals(1, journal.pendingCount());
+        Booking third = booking(1L, 3);
+        journal.append(third).join();
+        reopen();
+
+        assertEquals(List.of(first, third), journal.takePending(10, Duration.ZERO).stream()
+                .map(JournaledBooking::booking).toList());
+    }
+
+    @Test
+    void failedGroupIsNotReplayedTest() throws Exception {
+        Booking first = booking(1L, 1);
+        journal.append(first).join();
+        journal.close();
+        journal = new BookingJournal(directory, SEGMENT_SIZE);
+        // Queued before the committer starts so they are written as one group, the second fills
+        // the first segment and the third doesn't fit even a fresh one
+        CompletableFuture<Void> rolledBack = journal.append(booking(1L, 2));
+        Booking tooLarge = booking(1L, 3);
+        tooLarge.setUserId("x".repeat(SEGMENT_SIZE));
+        CompletableFuture<Void> failed = journal.append(tooLarge);
+        journal.open();
+
+        assertThrows(CompletionException.class, rolledBack::join);
+        assertThrows(CompletionException.class, failed::join);
+        assertFalse(journal.isFailed());
+        Booking last = booking(1L, 4);
+        journal.append(last).join();
+        reopen();
+
+        assertEquals(List.of(first, last), journal.takePending(10, Duration.ZERO).stream()
+                .map(JournaledBooking::booking).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drainerInsertsBookingsOfExistingShowTimesTest() throws Exception {
+        journal.append(booking(1L, 1)).join();
+        journal.append(booking(2L, 1)).join();
+        Booking replayed = booking(1L, 2);
+        journal.append(replayed).join();
+        when(jdbcTemplate.batchUpdate(any(String.class), anyList())).thenReturn(new int[] { 1, 0 });
+        when(jdbcTemplate.queryForList(any(String.class), eq(UUID.class), any(Object[].class)))
+                .thenReturn(List.of(replayed.getId()));
+        BookingJournalDrainer drainer = new BookingJournalDrainer(journal, jdbcTemplate, transactionTemplate,
+                showTimeRegistry, showTimeRepository, salesCounters, serviceMetrics, 10);
+
+        drainer.drain(journal.takePending(10, Duration.ZERO));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(any(String.class), rows.capture());
+        assertEquals(List.of(1L, 1L), rows.getValue().stream().map(row -> row[3]).toList());
+        assertEquals(1.0, meterRegistry.get("booking.journal.drained").tag("outcome", "inserted").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.journal.drained").tag("outcome", "duplicate").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.journal.drained").tag("outcome", "dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("booking.journal.drained").tag("outcome", "lost").counter().count());
+        verify(salesCounters, times(2)).recordDrained(1L, 1);
+        verify(salesCounters).recordDrained(2L, 1);
+        verify(salesCounters, times(2)).endWrite(1L);
+        reopen();
+        assertEquals(0, journal.pendingCount());
+    }
+
+    @Test
+    void drainerCountsBookingWhoseSeatIsTakenAsLostTest() throws Exception {
+        Booking booking = booking(1L, 1);
+        journal.append(booking).join();
+        // Another booking holds the seat in the table, so the insert is skipped and the id isn't there
+        when(jdbcTemplate.batchUpdate(any(String.class), anyList())).thenReturn(new int[] { 0 });
+        when(jdbcTemplate.queryForList(any(String.class), eq(UUID.class), any(Object[].class)))
+                .thenReturn(List.of());
+        BookingJournalDrainer drainer = new BookingJournalDrainer(journal, jdbcTemplate, transactionTemplate,
+                showTimeRegistry, showTimeRepository, salesCounters, serviceMetrics, 10);
+
+        drainer.drain(journal.takePending(10, Duration.ZERO));
+
+        verify(jdbcTemplate).queryForList(any(String.class), eq(UUID.class), eq(booking.getId()));
+        assertEquals(1.0, meterRegistry.get("booking.journal.drained").tag("outcome", "lost").counter().count());
+        assertEquals(0.0, meterRegistry.get("booking.journal.drained").tag("outcome", "duplicate").counter().count());
+        assertEquals(0.0, meterRegistry.get("booking.journal.drained").tag("outcome", "dropped").counter().count());
+    }
+
+    @Test
+    void createBookingWithJournalSkipsTheDatabaseTest() throws Exception {
+        ReflectionTestUtils.setField(bookingService, "bookingJournal", journal);
+        when(bookingRepository.findByShowtimeId(1L)).thenReturn(List.of());
+        Booking booking = new Booking();
+        booking.setShowtimeId(1L);
+        booking.setSeatNumber(7);
+        booking.setUserId("84438967-f68f-4fa0-b620-0f08217e76af");
+
+        Booking created = bookingService.createBooking(booking);
+
+        assertNotNull(created.getId());
+        verify(bookingRepository, never()).save(any());
+        verify(seatOccupancy, never()).release(eq(1L), eq(7));
+        verify(salesCounters).recordJournaled(1L, 1);
+        reopen();
+        assertEquals(List.of(created), journal.takePending(10, Duration.ZERO).stream()
+                .map(JournaledBooking::booking).toList());
+    }
+
+    private void reopen() throws IOException {
+        journal.close();
+        journal = new BookingJournal(directory, SEGMENT_SIZE);
+        journal.open();
+    }
+
+    private long segmentCount() throws IOException {
+        return segmentFiles().size();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    private static int recordSize(Booking booking) {
+        return 8 + 2 * Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES + booking.getUserId().length();
+    }
+
+    private static Booking booking(Long showtimeId, int seatNumber) {
+        Booking booking = new Booking();
+        booking.setId(TimeOrderedUuidGenerator.next());
+        booking.setShowtimeId(showtimeId);
+        booking.setSeatNumber(seatNumber);
+        booking.setUserId("84438967-f68f-4fa0-b620-0f08217e76af");
+        return booking;
+    }
+}
@@ -0,0 +1,215 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.ImportResult;
+import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.repository.IMovieRepository;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BulkImportApiTest {
+
+    @Mock
+    private IMovieRepository movieRepository;
+
+    @Mock
+    private IShowTimeRepository showTimeRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private ShowTimeIntervalIndex showTimeIndex = new ShowTimeIntervalIndex();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private MovieCache movieCache = new MovieCache(serviceMetrics);
+
+    @Spy
+    private ShowTimeRegistry showTimeRegistry = new ShowTimeRegistry();
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
+    @Spy
+    private CatalogVersions catalogVersions = new CatalogVersions(Jackson2ObjectMapperBuilder.json().build(), 1 << 20);
+
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @InjectMocks
+    private ShowTimeService showTimeService;
+
+    @InjectMocks
+    private MovieService movieService;
+
+    @InjectMocks
+    private BulkImportService bulkImportService;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(bulkImportService, "showTimeService", showTimeService);
+        ReflectionTestUtils.setField(bulkImportService, "movieService", movieService);
+        ReflectionTestUtils.setField(bulkImportService, "batchSize", 2);
+
+        Movie movie = new Movie();
+        movie.setId(1L);
+        movie.setTitle("Avengers");
+        movie.setDuration(120);
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(movie));
+
+        ShowTime existingShowTime = new ShowTime();
+        existingShowTime.setId(100L);
+        existingShowTime.setTheater("Theater 1");
+        existingShowTime.setStartTime(Instant.parse("2030-01-01T10:00:00Z"));
+        existingShowTime.setEndTime(Instant.parse("2030-01-01T12:00:00Z"));
+        when(showTimeRepository.findByTheater("Theater 1")).thenReturn(Arrays.asList(existingShowTime));
+
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            Object entity = invocation.getArgument(0);
+            if (entity instanceof ShowTime showTime) {
+                showTime.setId(ids.incrementAndGet());
+            } else if (entity instanceof Movie newMovie) {
+                newMovie.setId(ids.incrementAndGet());
+            }
+            return null;
+        }).when(entityManager).persist(any());
+    }
+
+    @Test
+    void importShowTimesReportsInvalidLinesAndOverlapsTest() {
+        String ndjson = showTimeLine("Theater 1", "2030-01-01T11:00:00Z", "2030-01-01T13:00:00Z") + "\n"
+                + showTimeLine("Theater 2", "2030-01-01T10:00:00Z", "2030-01-01T12:00:00Z") + "\n"
+                + "\n"
+                + showTimeLine("Theater 2", "2030-01-01T11:00:00Z", "2030-01-01T13:00:00Z") + "\n"
+                + showTimeLine("Theater 1", "2030-01-01T12:30:00Z", "2030-01-01T14:30:00Z") + "\n"
+                + "{\"movieId\":1,\"theater\":\"Theater 3\",\"price\":10}\n"
+                + "not json\n"
+                + showTimeLine("Theater 3", "2030-01-01T10:00:00Z", "2030-01-01T12:00:00Z") + "\n";
+
+        ImportResult result = bulkImportService.importShowTimes(new StringReader(ndjson), BulkImportService.NDJSON);
+
+        assertEquals(3, result.getImported());
+        assertEquals(4, result.getFailed());
+        assertEquals(List.of(1, 4, 6, 7), result.getErrors().stream().map(ImportResult.LineError::getLine).toList());
+        assertEquals("The showTime you are trying to add overlaps with an existing showTime",
+                result.getErrors().get(1).getMessage());
+        assertEquals("startTime is required and can't be null", result.getErrors().get(2).getMessage());
+        verify(entityManager, times(3)).persist(any(ShowTime.class));
+        verify(entityManager, times(2)).flush();
+        verify(showTimeRepository, times(1)).findByTheater("Theater 1");
+    }
+
+    @Test
+    void importShowTimesFailedBatchIsReportedPerLineTest() {
+        doThrow(new RuntimeException("connection lost")).doNothing().when(entityManager).flush();
+        String ndjson = showTimeLine("Theater 2", "2030-01-01T10:00:00Z", "2030-01-01T12:00:00Z") + "\n"
+                + showTimeLine("Theater 2", "2030-01-01T12:30:00Z", "2030-01-01T14:30:00Z") + "\n"
+                + showTimeLine("Theater 2", "2030-01-01T15:00:00Z", "2030-01-01T17:00:00Z") + "\n";
+
+        ImportResult result = bulkImportService.importShowTimes(new StringReader(ndjson), BulkImportService.NDJSON);
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals("The batch of this line could not be saved: connection lost", result.getErrors().get(0).getMessage());
+        assertEquals(List.of(), showTimeIndex.findOverlapping("Theater 2", Instant.parse("2030-01-01T10:00:00Z"),
+                Instant.parse("2030-01-01T12:00:00Z"), theater -> List.of()));
+    }
+
+    @Test
+    void importShowTimesOverlappingShowTimeBeingAddedTest() {
+        // A showtime that is being added concurrently and isn't saved yet
+        ShowTimeIntervalIndex.Reservation adding = showTimeIndex.tryReserve("Theater 2",
+                Instant.parse("2030-01-01T10:00:00Z"), Instant.parse("2030-01-01T12:00:00Z"), null, theater -> List.of());
+        String ndjson = showTimeLine("Theater 2", "2030-01-01T11:00:00Z", "2030-01-01T13:00:00Z") + "\n";
+
+        ImportResult result = bulkImportService.importShowTimes(new StringReader(ndjson), BulkImportService.NDJSON);
+        showTimeIndex.cancel(adding);
+
+        assertEquals(0, result.getImported());
+        assertEquals("The showTime you are trying to add overlaps with an existing showTime",
+                result.getErrors().get(0).getMessage());
+        assertEquals(1, bulkImportService.importShowTimes(new StringReader(ndjson), BulkImportService.NDJSON)
+                .getImported());
+    }
+
+    @Test
+    void importMoviesFromCsvSkipsDuplicateTitlesTest() {
+        Movie existingMovie = new Movie();
+        existingMovie.setTitle("Avengers");
+        when(movieRepository.findByTitleIn(any())).thenReturn(Arrays.asList(existingMovie));
+        String csv = "title,genre,duration,rating,releaseYear\n"
+                + "\"Endgame, Part 2\",Action,180,8.5,2019\n"
+                + "Avengers,Action,120,8,2012\n"
+                + "Endgame,Act1on,180,8.5,2019\n"
+                + "Dune,Sci-Fi,155,,2021\n"
+                + "Dune,Sci-Fi,155,8,2021\n"
+                + "Heat,Crime\n";
+
+        ImportResult result = bulkImportService.importMovies(new StringReader(csv), "text/csv; charset=UTF-8");
+
+        assertEquals(2, result.getImported());
+        assertEquals(4, result.getFailed());
+        assertEquals(List.of(3, 4, 5, 7), result.getErrors().stream().map(ImportResult.LineError::getLine).toList());
+        assertEquals("A movie with this title already exists", result.getErrors().get(0).getMessage());
+        assertEquals("Genre can't contain numbers", result.getErrors().get(1).getMessage());
+        assertEquals("Malformed line: expected 5 values but found 2", result.getErrors().get(3).getMessage());
+        verify(entityManager, times(2)).persist(any(Movie.class));
+    }
+
+    private String showTimeLine(String theater, String startTime, String endTime) {
+        return "{\"movieId\":1,\"theater\":\"" + theater + "\",\"price\":10,\"startTime\":\"" + startTime
+                + "\",\"endTime\":\"" + endTime + "\"}";
+    }
+}
@@ -1,27 +1,56 @@
 package com.att.tdp.popcorn_palace.service;
 
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Format;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.controller.CatalogResponses;
 import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.MovieStats;
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeSales;
 import com.att.tdp.popcorn_palace.repository.IBookingRepository;
 import com.att.tdp.popcorn_palace.repository.IMovieRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.mockito.junit.jupiter.MockitoSettings;
 
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -38,6 +67,26 @@ class MovieApiTest {
     @Mock
     private IBookingRepository bookingRepository;
 
+    @Mock
+    private ShowTimeService showTimeService;
+
+    @Mock
+    private DeletionReclaimer deletionReclaimer;
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(meterRegistry);
+
+    @Spy
+    private MovieCache movieCache = new MovieCache(serviceMetrics);
+
+    @Spy
+    private CatalogVersions catalogVersions = new CatalogVersions(Jackson2ObjectMapperBuilder.json().build(), 1 << 20);
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
     @InjectMocks
     private MovieService movieService;
 
@@ -428,6 +477,33 @@ class MovieApiTest {
 
         assertEquals("The duration of showtime: 1 is too short for the updated movie's duration and needs to be extended", exception.getMessage());
     }
+    @Test
+    void getMovieStatsTest() {
+        when(movieRepository.findByTitle(movie.getTitle())).thenReturn(Optional.of(movie));
+        when(movieRepository.findByTitle(secondMovie.getTitle())).thenReturn(Optional.of(secondMovie));
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 2L, 10.0, 2),
+                new ShowTimeSales(2L, 2L, 12.5, 4)));
+
+        MovieStats stats = movieService.getMovieStats(secondMovie.getTitle());
+        assertEquals(2, stats.getShowTimes());
+        assertEquals(6, stats.getSeatsSold());
+        assertEquals(70.0, stats.getRevenue());
+        assertEquals(new MovieStats(1L, "Avengers", 0, 0, 0), movieService.getMovieStats(movie.getTitle()));
+
+        salesCounters.recordSold(2L, 2);
+        assertEquals(95.0, movieService.getMovieStats(secondMovie.getTitle()).getRevenue());
+
+        // A showtime moved to another movie takes its sales along
+        salesCounters.register(2L, 1L, 12.5);
+        assertEquals(new MovieStats(2L, "Endgame", 1, 2, 20.0), movieService.getMovieStats(secondMovie.getTitle()));
+        assertEquals(new MovieStats(1L, "Avengers", 1, 6, 75.0), movieService.getMovieStats(movie.getTitle()));
+
+        salesCounters.remove(1L);
+        assertEquals(new MovieStats(2L, "Endgame", 0, 0, 0), movieService.getMovieStats(secondMovie.getTitle()));
+        assertThrows(NotFoundException.class, () -> movieService.getMovieStats("Unknown"));
+        verify(showTimeRepository, times(1)).findAllSales();
+    }
+
     @Test
     void deleteMovieTest() {
         // Mock the repository methods to return the existing movie when queried by title
@@ -448,4 +524,151 @@ class MovieApiTest {
     
         assertEquals("There is no movie with the given title 'Avengers'", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteMovieCascadesWithBulkDeletesTest() {
+        when(movieRepository.findByTitle(secondMovie.getTitle())).thenReturn(Optional.of(secondMovie));
+        when(showTimeRepository.findByMovieId(2L)).thenReturn(Arrays.asList(showTime, secondShowTime));
+        when(showTimeService.deleteShowTimes(Arrays.asList(showTime, secondShowTime))).thenReturn(7);
+
+        movieService.deleteMovieByTitle(secondMovie.getTitle());
+
+        verify(showTimeService, times(1)).deleteShowTimes(Arrays.asList(showTime, secondShowTime));
+        verify(showTimeService, never()).deleteShowTimeById(any());
+        verify(movieRepository, times(1)).delete(secondMovie);
+        verify(serviceMetrics, times(1)).recordMovieCascadeDelete(2, 7);
+    }
+
+    @Test
+    void deleteMovieAsyncTombstonesShowTimesTest() {
+        ReflectionTestUtils.setField(movieService, "asyncDeletes", true);
+        when(movieRepository.findByTitle(secondMovie.getTitle())).thenReturn(Optional.of(secondMovie));
+        when(deletionReclaimer.tombstoneMovie(secondMovie)).thenReturn(Arrays.asList(showTime, secondShowTime));
+
+        movieService.deleteMovieByTitle(secondMovie.getTitle());
+
+        verify(showTimeService, times(1)).evictShowTimes(Arrays.asList(showTime, secondShowTime));
+        verify(deletionReclaimer, times(1)).requestReclaim();
+        verify(showTimeService, never()).deleteShowTimes(anyList());
+        assertEquals(0, movieCache.size());
+    }
+
+    @Test
+    void updateMovieReadsCachedMovieTest() {
+        Movie updatedMovie = new Movie();
+        updatedMovie.setRating(9.0);
+        when(movieRepository.findByTitle("Endgame")).thenReturn(Optional.of(secondMovie));
+        when(movieRepository.save(any(Movie.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(showTimeRepository.findByMovieId(2L)).thenReturn(Arrays.asList(showTime));
+
+        movieCache.findByTitle("Endgame", movieRepository::findByTitle);
+        assertThrows(IllegalArgumentException.class, () -> {
+            Movie longerMovie = new Movie();
+            longerMovie.setDuration(300);
+            movieService.updateMovie("Endgame", longerMovie);
+        });
+        movieService.updateMovie("Endgame", updatedMovie);
+
+        // The rejected update must not leak into the cached copy
+        verify(movieRepository, times(1))
+                .save(argThat(saved -> Double.valueOf(9.0).equals(saved.getRating()) && saved.getDuration() == 180));
+        verify(movieRepository, times(1)).findByTitle("Endgame");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").counter().count());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("result", "hit").counter().count());
+        assertEquals(0, movieCache.size());
+    }
+
+    @Test
+    void updateMovieTitleInvalidatesBothTitlesTest() {
+        Movie renamedMovie = new Movie();
+        renamedMovie.setTitle("Spider-Man");
+        when(movieRepository.findByTitle("Endgame")).thenReturn(Optional.of(secondMovie));
+        when(movieRepository.save(any(Movie.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        movieService.updateMovie("Endgame", renamedMovie);
+        when(movieRepository.findByTitle("Endgame")).thenReturn(Optional.empty());
+
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> {
+            movieService.updateMovie("Endgame", renamedMovie);
+        });
+        assertEquals("There is no movie with the given title 'Endgame'", exception.getMessage());
+        assertEquals(0, movieCache.size());
+    }
+
+    @Test
+    void getMoviesPageTest() {
+        Movie thirdMovie = new Movie();
+        thirdMovie.setId(3L);
+        thirdMovie.setTitle("Spider-Man");
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(Arrays.asList(movie, secondMovie, thirdMovie));
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(3))).thenReturn(Arrays.asList(thirdMovie));
+
+        KeysetPage<Movie> firstPage = movieService.getMoviesPage(null, 2);
+        assertEquals(Arrays.asList(movie, secondMovie), firstPage.getItems());
+        assertEquals("2", firstPage.getNextCursor());
+
+        KeysetPage<Movie> lastPage = movieService.getMoviesPage(2L, 2);
+        assertEquals(Arrays.asList(thirdMovie), lastPage.getItems());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void getAllMoviesBodyIsCachedUntilAMovieChangesTest() {
+        when(movieRepository.findAll()).thenReturn(Arrays.asList(movie));
+        when(movieRepository.findByTitle("Avengers")).thenReturn(Optional.of(movie));
+        CatalogVersions.Snapshot first = catalogVersions.snapshot(Catalog.MOVIES, Format.JSON, movieService::getAllMovies);
+        CatalogVersions.Snapshot second = catalogVersions.snapshot(Catalog.MOVIES, Format.JSON, movieService::getAllMovies);
+        assertSame(first, second);
+        assertEquals(first.eTag(), catalogVersions.eTag(Catalog.MOVIES, Format.JSON, false));
+        verify(movieRepository, times(1)).findAll();
+
+        Movie update = new Movie();
+        update.setGenre("Drama");
+        movieService.updateMovie("Avengers", update);
+
+        CatalogVersions.Snapshot updated = catalogVersions.snapshot(Catalog.MOVIES, Format.JSON, movieService::getAllMovies);
+        assertNotEquals(first.eTag(), updated.eTag());
+        verify(movieRepository, times(2)).findAll();
+    }
+
+    @Test
+    void getAllMoviesNegotiatesFormatAndEncodingTest() throws Exception {
+        when(movieRepository.findAll()).thenReturn(Arrays.asList(movie));
+        CatalogResponses catalogResponses = new CatalogResponses();
+        ReflectionTestUtils.setField(catalogResponses, "catalogVersions", catalogVersions);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/all");
+        request.addHeader(HttpHeaders.ACCEPT, "application/json;q=0.5, application/cbor");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "br, gzip");
+
+        ResponseEntity<byte[]> response = catalogResponses.respond(Catalog.MOVIES, movieService::getAllMovies,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        assertEquals(MediaType.APPLICATION_CBOR, response.getHeaders().getContentType());
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"" + catalogVersions.eTag(Catalog.MOVIES, Format.CBOR, true) + "\"",
+                response.getHeaders().getETag());
+        byte[] cbor = new GZIPInputStream(new ByteArrayInputStream(response.getBody())).readAllBytes();
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().build().copyWith(new CBORFactory());
+        assertEquals(List.of(movie), cborMapper.readValue(cbor, new TypeReference<List<Movie>>() {
+        }));
+
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, response.getHeaders().getETag());
+        assertNull(catalogResponses.respond(Catalog.MOVIES, movieService::getAllMovies,
+                new ServletWebRequest(request, new MockHttpServletResponse())));
+        MockHttpServletRequest jsonRequest = new MockHttpServletRequest("GET", "/movies/all");
+        jsonRequest.addHeader(HttpHeaders.IF_NONE_MATCH, response.getHeaders().getETag());
+        ResponseEntity<byte[]> json = catalogResponses.respond(Catalog.MOVIES, movieService::getAllMovies,
+                new ServletWebRequest(jsonRequest, new MockHttpServletResponse()));
+        assertEquals(MediaType.APPLICATION_JSON, json.getHeaders().getContentType());
+        verify(movieRepository, times(2)).findAll();
+    }
+
+    @Test
+    void getMoviesPageWithInvalidLimitTest() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            movieService.getMoviesPage(null, 0);
+        });
+        assertEquals("limit must be between 1 and 1000", exception.getMessage());
+    }
+}
@@ -0,0 +1,246 @@
+package com.att.tdp.popcorn_palace.service;
+
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
+import com.att.tdp.popcorn_palace.concurrent.HashedTimerWheel;
+import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.SeatHold;
+import com.att.tdp.popcorn_palace.repository.IBookingRepository;
+import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SeatHoldApiTest {
+
+    @Mock
+    private IBookingRepository bookingRepository;
+
+    @Mock
+    private IShowTimeRepository showTimeRepository;
+
+    @Spy
+    private SeatOccupancy seatOccupancy = new SeatOccupancy();
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(meterRegistry);
+
+    @Spy
+    private ShowTimeRegistry showTimeRegistry = new ShowTimeRegistry();
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
+    @Spy
+    private HashedTimerWheel seatHoldExpiryWheel = new HashedTimerWheel(Duration.ofMillis(10), 64, "test-hold-expiry");
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @InjectMocks
+    private SeatHoldService seatHoldService;
+
+    private final String userId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(seatHoldService, "bookingService", bookingService);
+        showTimeRegistry.register(1L, Instant.now().plusSeconds(60 * 60));
+        when(bookingRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<Booking> bookings = invocation.getArgument(0);
+            bookings.forEach(booking -> booking.setId(UUID.randomUUID()));
+            return bookings;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        seatHoldExpiryWheel.close();
+    }
+
+    @Test
+    void holdSeatsSuccessfullyTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4, 5));
+
+        assertNotNull(hold.getHoldId());
+        assertEquals(Arrays.asList(4, 5), hold.getSeatNumbers());
+        assertNotNull(hold.getExpiresAt());
+        assertEquals(1, seatHoldService.activeHoldCount());
+        assertFalse(seatOccupancy.tryClaim(1L, 4, showtimeId -> List.of()));
+    }
+
+    @Test
+    void holdSeatsFailSeatAlreadyHeldTest() {
+        seatHoldService.holdSeats(1L, holdRequest(4, 5));
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
+            seatHoldService.holdSeats(1L, holdRequest(6, 5));
+        });
+
+        assertEquals("Seat 5 is already taken for this showtime", exception.getMessage());
+        // Seat 6 was claimed before seat 5 failed and must have been given back
+        assertTrue(seatOccupancy.tryClaim(1L, 6, showtimeId -> List.of()));
+    }
+
+    @Test
+    void holdSeatsFailNonExistingShowTimeTest() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            seatHoldService.holdSeats(2L, holdRequest(1));
+        });
+
+        assertEquals("There is no showtime with the given showtimeId: 2", exception.getMessage());
+    }
+
+    @Test
+    void confirmHoldSuccessfullyTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4, 5));
+
+        List<Booking> bookings = seatHoldService.confirmHold(1L, hold.getHoldId());
+
+        assertEquals(2, bookings.size());
+        assertEquals(userId, bookings.get(0).getUserId());
+        assertEquals(0, seatHoldService.activeHoldCount());
+        // Confirming does not claim the seats a second time
+        verify(seatOccupancy, times(2)).tryClaim(eq(1L), anyInt(), any());
+    }
+
+    @Test
+    void confirmHoldFailAlreadyConfirmedTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4));
+        seatHoldService.confirmHold(1L, hold.getHoldId());
+
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> {
+            seatHoldService.confirmHold(1L, hold.getHoldId());
+        });
+
+        assertEquals("There is no active hold with the given holdId: " + hold.getHoldId(), exception.getMessage());
+        verify(bookingRepository, times(1)).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void confirmHoldFailWrongShowTimeTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4));
+
+        assertThrows(NotFoundException.class, () -> {
+            seatHoldService.confirmHold(2L, hold.getHoldId());
+        });
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void confirmHoldFailingToSaveFreesSeatsTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4, 5));
+        when(bookingRepository.saveAllAndFlush(anyList())).thenThrow(new IllegalStateException("connection lost"));
+
+        assertThrows(IllegalStateException.class, () -> {
+            seatHoldService.confirmHold(1L, hold.getHoldId());
+        });
+
+        assertEquals(0, seatHoldService.activeHoldCount());
+        assertTrue(seatOccupancy.tryClaim(1L, 4, showtimeId -> List.of()));
+        assertTrue(seatOccupancy.tryClaim(1L, 5, showtimeId -> List.of()));
+    }
+
+    @Test
+    void releaseHoldWhileConfirmingTest() throws Exception {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4));
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        when(bookingRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            saving.countDown();
+            released.await();
+            return invocation.getArgument(0);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Booking>> confirmed = executor.submit(() -> seatHoldService.confirmHold(1L, hold.getHoldId()));
+            saving.await();
+
+            assertThrows(NotFoundException.class, () -> seatHoldService.releaseHold(1L, hold.getHoldId()));
+            released.countDown();
+            assertEquals(1, confirmed.get().size());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse(seatOccupancy.tryClaim(1L, 4, showtimeId -> List.of()));
+    }
+
+    @Test
+    void releaseHoldFreesSeatsTest() {
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4, 5));
+
+        seatHoldService.releaseHold(1L, hold.getHoldId());
+
+        assertEquals(0, seatHoldService.activeHoldCount());
+        assertTrue(seatOccupancy.tryClaim(1L, 4, showtimeId -> List.of()));
+        assertThrows(NotFoundException.class, () -> {
+            seatHoldService.confirmHold(1L, hold.getHoldId());
+        });
+    }
+
+    @Test
+    void expiredHoldFreesSeatsTest() throws InterruptedException {
+        ReflectionTestUtils.setField(seatHoldService, "holdTtl", Duration.ofMillis(50));
+        SeatHold hold = seatHoldService.holdSeats(1L, holdRequest(4, 5));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (seatHoldService.activeHoldCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, seatHoldService.activeHoldCount());
+        assertTrue(seatOccupancy.tryClaim(1L, 5, showtimeId -> List.of()));
+        assertThrows(NotFoundException.class, () -> {
+            seatHoldService.confirmHold(1L, hold.getHoldId());
+        });
+        assertEquals(1.0, meterRegistry.get("seat.holds").tag("outcome", "expired").counter().count());
+    }
+
+    private SeatHold holdRequest(Integer... seatNumbers) {
+        SeatHold request = new SeatHold();
+        request.setUserId(userId);
+        request.setSeatNumbers(Arrays.asList(seatNumbers));
+        return request;
+    }
+}
@@ -1,27 +1,58 @@
 package com.att.tdp.popcorn_palace.service;
 
+import com.att.tdp.popcorn_palace.cache.CatalogVersions;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Catalog;
+import com.att.tdp.popcorn_palace.cache.CatalogVersions.Format;
+import com.att.tdp.popcorn_palace.cache.MovieCache;
+import com.att.tdp.popcorn_palace.cache.SalesCounters;
+import com.att.tdp.popcorn_palace.cache.SeatOccupancy;
+import com.att.tdp.popcorn_palace.cache.ShowTimeIntervalIndex;
+import com.att.tdp.popcorn_palace.cache.ShowTimeRegistry;
 import com.att.tdp.popcorn_palace.exception.NotFoundException;
+import com.att.tdp.popcorn_palace.metrics.ServiceMetrics;
+import com.att.tdp.popcorn_palace.model.Booking;
+import com.att.tdp.popcorn_palace.model.KeysetPage;
 import com.att.tdp.popcorn_palace.model.Movie;
+import com.att.tdp.popcorn_palace.model.SeatAvailability;
 import com.att.tdp.popcorn_palace.model.ShowTime;
+import com.att.tdp.popcorn_palace.model.ShowTimeFilter;
+import com.att.tdp.popcorn_palace.model.ShowTimeSales;
+import com.att.tdp.popcorn_palace.model.ShowTimeStats;
+import com.att.tdp.popcorn_palace.model.ShowTimeSummary;
 import com.att.tdp.popcorn_palace.repository.IBookingRepository;
 import com.att.tdp.popcorn_palace.repository.IMovieRepository;
 import com.att.tdp.popcorn_palace.repository.IShowTimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.mockito.junit.jupiter.MockitoSettings;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -38,6 +69,27 @@ class ShowtimeApiTest {
     @Mock
     private IBookingRepository bookingRepository;
 
+    @Spy
+    private SeatOccupancy seatOccupancy = new SeatOccupancy();
+
+    @Spy
+    private ShowTimeIntervalIndex showTimeIndex = new ShowTimeIntervalIndex();
+
+    @Spy
+    private ServiceMetrics serviceMetrics = new ServiceMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private MovieCache movieCache = new MovieCache(serviceMetrics);
+
+    @Spy
+    private ShowTimeRegistry showTimeRegistry = new ShowTimeRegistry();
+
+    @Spy
+    private SalesCounters salesCounters = new SalesCounters();
+
+    @Spy
+    private CatalogVersions catalogVersions = new CatalogVersions(Jackson2ObjectMapperBuilder.json().build(), 1 << 20);
+
     @InjectMocks
     private ShowTimeService showTimeService;
 
@@ -126,6 +178,7 @@ class ShowtimeApiTest {
     @Test
     void addShowTimeSuccessfullyTest() {
         ShowTime showTime = new ShowTime();
+        showTime.setId(3L);
         showTime.setMovieId(1L);
         showTime.setTheater("Theater 1");
         showTime.setStartTime(Instant.now());
@@ -135,6 +188,8 @@ class ShowtimeApiTest {
         when(showTimeRepository.save(showTime)).thenReturn(showTime);
         ShowTime result = showTimeService.addShowTime(showTime);
         assertEquals(showTime, result);
+        assertEquals(showTime.getStartTime(),
+                showTimeRegistry.find(3L, showTimeRepository::findAllSummaries).startTime());
     }
 
     @Test
@@ -308,8 +363,7 @@ class ShowtimeApiTest {
             showTime.setStartTime(Instant.now());
             showTime.setEndTime(Instant.now().plusSeconds(2 * 60 * 60));
             showTime.setPrice(10.0);
-            when(showTimeRepository.findOverlappingShowTimes(showTime.getTheater(), showTime.getStartTime(),
-                    showTime.getEndTime())).thenReturn(Arrays.asList(showTime));
+            when(showTimeRepository.findByTheater(showTime.getTheater())).thenReturn(Arrays.asList(showTime));
             DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
                 showTimeService.addShowTime(showTime);
             });
@@ -468,8 +522,7 @@ class ShowtimeApiTest {
 
         when(showTimeRepository.findById(secondShowTime.getId())).thenReturn(Optional.of(secondShowTime));
         when(movieRepository.findById(secondShowTime.getMovieId())).thenReturn(Optional.of(secondMovie));
-        when(showTimeRepository.findOverlappingShowTimes(secondShowTime.getTheater(), secondShowTime.getStartTime(),
-                secondShowTime.getEndTime())).thenReturn(Arrays.asList(showTime));
+        when(showTimeRepository.findByTheater(secondShowTime.getTheater())).thenReturn(Arrays.asList(showTime));
 
         DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
             showTimeService.updateShowTime(secondShowTime.getId(), secondShowTime);
@@ -483,9 +536,12 @@ class ShowtimeApiTest {
         when(showTimeRepository.findById(showTime.getId())).thenReturn(Optional.of(showTime));
         when(showTimeRepository.existsById(showTime.getId())).thenReturn(true);
 
+        String eTagBeforeDelete = catalogVersions.eTag(Catalog.SHOWTIMES, Format.JSON, false);
         showTimeService.deleteShowTimeById(showTime.getId());
 
         verify(showTimeRepository, times(1)).delete(showTime);
+        assertNotEquals(eTagBeforeDelete, catalogVersions.eTag(Catalog.SHOWTIMES, Format.JSON, false));
+        verify(showTimeRegistry, times(1)).remove(showTime.getId());
         when(showTimeRepository.findById(showTime.getId())).thenReturn(Optional.empty());
         when(showTimeRepository.existsById(showTime.getId())).thenReturn(false);
 
@@ -495,4 +551,368 @@ class ShowtimeApiTest {
 
         assertEquals("There is no showTime with the given id '1'", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteShowTimeDeletesBookingsInChunksTest() {
+        when(showTimeRepository.findById(showTime.getId())).thenReturn(Optional.of(showTime));
+        when(bookingRepository.deleteChunkByShowtimeIdIn(List.of(1L), 1000)).thenReturn(1000, 1000, 5);
+
+        int deletedBookings = showTimeService.deleteShowTimeById(showTime.getId());
+
+        assertEquals(2005, deletedBookings);
+        verify(bookingRepository, times(3)).deleteChunkByShowtimeIdIn(List.of(1L), 1000);
+        verify(bookingRepository, never()).findByShowtimeId(1L);
+        verify(seatOccupancy, times(1)).evict(1L);
+    }
+
+    @Test
+    void deleteShowTimesChunksShowTimeIdsTest() {
+        ReflectionTestUtils.setField(showTimeService, "deleteChunkSize", 1);
+
+        showTimeService.deleteShowTimes(Arrays.asList(showTime, secondShowTime));
+
+        verify(showTimeRepository, times(1)).deleteByIdIn(List.of(showTime.getId()));
+        verify(showTimeRepository, times(1)).deleteByIdIn(List.of(secondShowTime.getId()));
+        verify(showTimeIndex, times(1)).remove(secondShowTime.getId(), secondShowTime.getTheater());
+    }
+
+    @Test
+    void getShowTimesPageTest() {
+        when(showTimeRepository.findByIdGreaterThanOrderByIdAsc(1L, Limit.of(11))).thenReturn(Arrays.asList(secondShowTime));
+
+        KeysetPage<ShowTime> page = showTimeService.getShowTimesPage(1L, 10);
+        assertEquals(Arrays.asList(secondShowTime), page.getItems());
+        assertEquals(null, page.getNextCursor());
+    }
+
+    @Test
+    void searchShowTimesPagesByStartTimeAndIdTest() {
+        ShowTimeFilter filter = new ShowTimeFilter();
+        filter.setMovieId(1L);
+        ShowTimeSummary first = new ShowTimeSummary(7L, 1L, "Theater 1", Instant.parse("2030-01-01T10:00:00Z"),
+                Instant.parse("2030-01-01T12:00:00Z"), 10.0);
+        ShowTimeSummary second = new ShowTimeSummary(3L, 1L, "Theater 2", Instant.parse("2030-01-01T13:00:00Z"),
+                Instant.parse("2030-01-01T15:00:00Z"), 10.0);
+        when(showTimeRepository.search(filter, Instant.parse("2030-01-01T09:00:00Z"), 12L, 2))
+                .thenReturn(Arrays.asList(first, second));
+
+        KeysetPage<ShowTimeSummary> page = showTimeService.searchShowTimes(filter, "2030-01-01T09:00:00Z_12", 1);
+        assertEquals(Arrays.asList(first), page.getItems());
+        assertEquals("2030-01-01T10:00:00Z_7", page.getNextCursor());
+    }
+
+    @Test
+    void searchShowTimesRejectsInvalidArgumentsTest() {
+        ShowTimeFilter filter = new ShowTimeFilter();
+        assertThrows(IllegalArgumentException.class, () -> showTimeService.searchShowTimes(filter, "12", 10));
+
+        filter.setFrom(Instant.parse("2030-01-02T00:00:00Z"));
+        filter.setTo(Instant.parse("2030-01-01T00:00:00Z"));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> showTimeService.searchShowTimes(filter, null, 10));
+        assertEquals("from must be earlier than to", exception.getMessage());
+        verify(showTimeRepository, never()).search(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getSeatAvailabilityEncodesTakenSeatsTest() {
+        when(showTimeRepository.existsById(1L)).thenReturn(true);
+        when(bookingRepository.findByShowtimeId(1L)).thenReturn(Arrays.asList(seatBooking(1), seatBooking(2), seatBooking(10)));
+
+        SeatAvailability bitmap = showTimeService.getSeatAvailability(1L, SeatAvailability.BITMAP);
+        SeatAvailability runs = showTimeService.getSeatAvailability(1L, SeatAvailability.RLE);
+
+        assertEquals(1021, bitmap.getAvailable());
+        byte[] bits = Base64.getDecoder().decode(bitmap.getSeats());
+        assertEquals(128, bits.length);
+        assertEquals(0b11, bits[0]);
+        assertEquals(0b10, bits[1]);
+        assertEquals("0,2,7,1,1014", runs.getSeats());
+        verify(bookingRepository, times(1)).findByShowtimeId(1L);
+        verify(showTimeRepository, times(1)).existsById(1L);
+    }
+
+    @Test
+    void getSeatAvailabilityETagChangesWithSeatsTest() {
+        when(showTimeRepository.existsById(1L)).thenReturn(true);
+
+        String emptyETag = showTimeService.getSeatAvailability(1L, SeatAvailability.BITMAP).getETag();
+        assertEquals(emptyETag, showTimeService.getSeatAvailability(1L, SeatAvailability.BITMAP).getETag());
+        seatOccupancy.tryClaim(1L, 1024, bookingRepository::findByShowtimeId);
+        SeatAvailability availability = showTimeService.getSeatAvailability(1L, SeatAvailability.RLE);
+
+        assertNotEquals(emptyETag, showTimeService.getSeatAvailability(1L, SeatAvailability.BITMAP).getETag());
+        assertEquals("1023,1", availability.getSeats());
+    }
+
+    @Test
+    void getSeatAvailabilityFailTest() {
+        when(showTimeRepository.existsById(5L)).thenReturn(false);
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> {
+            showTimeService.getSeatAvailability(5L, SeatAvailability.BITMAP);
+        });
+        assertEquals("There is no showtime with the given id: 5", exception.getMessage());
+
+        when(showTimeRepository.existsById(1L)).thenReturn(true);
+        assertThrows(IllegalArgumentException.class, () -> {
+            showTimeService.getSeatAvailability(1L, "png");
+        });
+    }
+
+    @Test
+    void getShowTimeStatsTest() {
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 2),
+                new ShowTimeSales(2L, 2L, 10.0, 0)));
+
+        ShowTimeStats stats = showTimeService.getShowTimeStats(1L);
+        assertEquals(2, stats.getSeatsSold());
+        assertEquals(20.0, stats.getRevenue());
+        assertEquals(1024, stats.getCapacity());
+
+        salesCounters.recordSold(1L, 3);
+        ShowTime repriced = new ShowTime();
+        repriced.setPrice(12.5);
+        when(showTimeRepository.findById(1L)).thenReturn(Optional.of(showTime));
+        showTimeService.updateShowTime(1L, repriced);
+        assertEquals(5, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        assertEquals(62.5, showTimeService.getShowTimeStats(1L).getRevenue());
+
+        // One of the recorded sales never reached the database and showtime 2 was deleted directly
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 12.5, 4)));
+        showTimeService.reconcileSalesCounters();
+
+        assertEquals(50.0, showTimeService.getShowTimeStats(1L).getRevenue());
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> showTimeService.getShowTimeStats(2L));
+        assertEquals("There is no showtime with the given id: 2", exception.getMessage());
+        verify(showTimeRepository, times(2)).findAllSales();
+        verify(bookingRepository, never()).findByShowtimeId(any());
+    }
+
+    @Test
+    void reconcileKeepsSalesRecordedWhileCountingTest() {
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 2),
+                new ShowTimeSales(2L, 1L, 10.0, 1), new ShowTimeSales(3L, 2L, 10.0, 0)));
+        assertEquals(2, showTimeService.getShowTimeStats(1L).getSeatsSold());
+
+        // Two bookings of showtime 1 were written directly and showtime 2 moved to movie 2,
+        // and three seats of showtime 1 are sold and committed after the database is counted
+        when(showTimeRepository.findAllSales()).thenAnswer(invocation -> {
+            salesCounters.beginWrite(1L);
+            salesCounters.recordSold(1L, 3);
+            salesCounters.endWrite(1L);
+            return List.of(new ShowTimeSales(1L, 1L, 10.0, 4), new ShowTimeSales(2L, 2L, 10.0, 1),
+                    new ShowTimeSales(3L, 2L, 10.0, 0));
+        });
+        showTimeService.reconcileSalesCounters();
+
+        // Showtime 1 and its movie were written while counting and are left for the next run
+        assertEquals(5, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        SalesCounters.MovieCounters firstMovie = salesCounters.findMovie(1L, showTimeRepository::findAllSales);
+        assertEquals(5, firstMovie.seatsSold());
+        SalesCounters.MovieCounters secondMovie = salesCounters.findMovie(2L, showTimeRepository::findAllSales);
+        assertEquals(1, secondMovie.seatsSold());
+        assertEquals(10.0, secondMovie.revenue());
+
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 7),
+                new ShowTimeSales(2L, 2L, 10.0, 1), new ShowTimeSales(3L, 2L, 10.0, 0)));
+        showTimeService.reconcileSalesCounters();
+
+        assertEquals(7, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        assertEquals(70.0, showTimeService.getShowTimeStats(1L).getRevenue());
+        assertEquals(7, firstMovie.seatsSold());
+        assertEquals(70.0, firstMovie.revenue());
+    }
+
+    @Test
+    void reconcileDoesNotCountBookingCommittedWhileCountingTwiceTest() {
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 2)));
+        assertEquals(2, showTimeService.getShowTimeStats(1L).getSeatsSold());
+
+        // A booking commits after the counters are read and before the count returns, and records its sale after
+        when(showTimeRepository.findAllSales()).thenAnswer(invocation -> {
+            salesCounters.beginWrite(1L);
+            return List.of(new ShowTimeSales(1L, 1L, 10.0, 3));
+        });
+        showTimeService.reconcileSalesCounters();
+        salesCounters.recordSold(1L, 1);
+        salesCounters.endWrite(1L);
+
+        assertEquals(3, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        assertEquals(3, salesCounters.findMovie(1L, showTimeRepository::findAllSales).seatsSold());
+        assertEquals(30.0, salesCounters.findMovie(1L, showTimeRepository::findAllSales).revenue());
+    }
+
+    @Test
+    void reconcileCountsBookingsWaitingInTheJournalTest() {
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 2)));
+        assertEquals(2, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        salesCounters.beginWrite(1L);
+        salesCounters.recordJournaled(1L, 2);
+        salesCounters.endWrite(1L);
+
+        showTimeService.reconcileSalesCounters();
+        assertEquals(4, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        assertEquals(40.0, salesCounters.findMovie(1L, showTimeRepository::findAllSales).revenue());
+
+        // Drained, one of them was inserted and the other lost to a seat taken by another booking
+        salesCounters.beginWrite(1L);
+        salesCounters.recordDrained(1L, 2);
+        salesCounters.endWrite(1L);
+        when(showTimeRepository.findAllSales()).thenReturn(List.of(new ShowTimeSales(1L, 1L, 10.0, 3)));
+        showTimeService.reconcileSalesCounters();
+
+        assertEquals(3, showTimeService.getShowTimeStats(1L).getSeatsSold());
+        assertEquals(30.0, salesCounters.findMovie(1L, showTimeRepository::findAllSales).revenue());
+    }
+
+    @Test
+    void addShowTimeCountsSalesBeforeItCanBeBookedTest() {
+        Instant start = Instant.parse("2030-01-01T10:00:00Z");
+        ShowTime newShowTime = newShowTime(10L, "Theater 9", start, start.plusSeconds(2 * 60 * 60));
+        when(showTimeRepository.save(any(ShowTime.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        showTimeService.addShowTime(newShowTime);
+
+        InOrder order = inOrder(salesCounters, showTimeRegistry);
+        order.verify(salesCounters).register(10L, 1L, 10.0);
+        order.verify(showTimeRegistry).register(10L, start);
+    }
+
+    @Test
+    void deleteVeryLongShowTimeKeepsOverlapChecksTest() {
+        Instant start = Instant.parse("2030-01-01T10:00:00Z");
+        // Mistyped to run for a year, before the regular schedule
+        ShowTime veryLong = newShowTime(10L, "Theater 9", start.minus(Duration.ofDays(366)), start.minusSeconds(60));
+        ShowTime regular = newShowTime(11L, "Theater 9", start, start.plusSeconds(2 * 60 * 60));
+        when(showTimeRepository.save(any(ShowTime.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        showTimeService.addShowTime(veryLong);
+        showTimeService.addShowTime(regular);
+        when(showTimeRepository.findById(10L)).thenReturn(Optional.of(veryLong));
+
+        showTimeService.deleteShowTimeById(10L);
+
+        showTimeService.addShowTime(newShowTime(12L, "Theater 9", start.minus(Duration.ofDays(100)),
+                start.minus(Duration.ofDays(100)).plusSeconds(2 * 60 * 60)));
+        assertThrows(DataIntegrityViolationException.class, () -> showTimeService.addShowTime(
+                newShowTime(13L, "Theater 9", start.plusSeconds(60 * 60), start.plusSeconds(3 * 60 * 60))));
+        assertEquals(List.of(11L), showTimeIndex.findOverlapping("Theater 9", start.minusSeconds(30),
+                start.plusSeconds(30), showTimeRepository::findByTheater));
+    }
+
+    @Test
+    void overlapQueriesMatchTheScheduleTest() {
+        Instant start = Instant.parse("2030-01-01T00:00:00Z");
+        Random random = new Random(42);
+        List<ShowTime> schedule = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            Instant showTimeStart = start.plusSeconds(random.nextInt(30 * 24 * 60) * 60L);
+            // Mostly a few hours, some of them days long
+            long minutes = random.nextInt(10) == 0 ? random.nextInt(5 * 24 * 60) : 30 + random.nextInt(240);
+            schedule.add(newShowTime(id, "Theater 9", showTimeStart, showTimeStart.plusSeconds(minutes * 60)));
+        }
+        when(showTimeRepository.findByTheater("Theater 9")).thenReturn(schedule);
+        showTimeIndex.findOverlapping("Theater 9", start, start, showTimeRepository::findByTheater);
+        List<ShowTime> remaining = new ArrayList<>();
+        for (ShowTime scheduled : schedule) {
+            if (random.nextBoolean()) {
+                showTimeIndex.remove(scheduled.getId(), "Theater 9");
+            } else {
+                remaining.add(scheduled);
+            }
+        }
+
+        for (int query = 0; query < 200; query++) {
+            Instant from = start.plusSeconds(random.nextInt(31 * 24 * 60) * 60L);
+            Instant to = from.plusSeconds(random.nextInt(12 * 60) * 60L);
+            List<Long> expected = remaining.stream()
+                    .filter(scheduled -> !scheduled.getStartTime().isAfter(to)
+                            && !scheduled.getEndTime().isBefore(from))
+                    .map(ShowTime::getId)
+                    .sorted()
+                    .toList();
+            List<Long> found = new ArrayList<>(showTimeIndex.findOverlapping("Theater 9", from, to,
+                    showTimeRepository::findByTheater));
+            found.sort(null);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void addShowTimesLoadsTheaterScheduleOnceTest() {
+        Instant start = Instant.parse("2030-01-01T10:00:00Z");
+        ShowTime first = newShowTime(10L, "Theater 9", start, start.plusSeconds(2 * 60 * 60));
+        ShowTime second = newShowTime(11L, "Theater 9", start.plusSeconds(3 * 60 * 60), start.plusSeconds(5 * 60 * 60));
+        ShowTime overlapping = newShowTime(12L, "Theater 9", start.plusSeconds(60 * 60), start.plusSeconds(4 * 60 * 60));
+        when(showTimeRepository.save(any(ShowTime.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        showTimeService.addShowTime(first);
+        showTimeService.addShowTime(second);
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
+            showTimeService.addShowTime(overlapping);
+        });
+
+        assertEquals("The showTime you are trying to add overlaps with an existing showTime", exception.getMessage());
+        verify(showTimeRepository, times(1)).findByTheater("Theater 9");
+        verify(movieRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void addOverlappingShowTimeWhileFirstIsSavingTest() throws Exception {
+        Instant start = Instant.parse("2030-01-01T10:00:00Z");
+        ShowTime first = newShowTime(20L, "Theater 8", start, start.plusSeconds(2 * 60 * 60));
+        ShowTime overlapping = newShowTime(21L, "Theater 8", start.plusSeconds(60 * 60), start.plusSeconds(3 * 60 * 60));
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch overlapChecked = new CountDownLatch(1);
+        when(showTimeRepository.save(first)).thenAnswer(invocation -> {
+            saving.countDown();
+            overlapChecked.await();
+            return first;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ShowTime> added = executor.submit(() -> showTimeService.addShowTime(first));
+            saving.await();
+
+            assertThrows(DataIntegrityViolationException.class, () -> showTimeService.addShowTime(overlapping));
+            overlapChecked.countDown();
+            assertEquals(first, added.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(showTimeRepository, never()).save(overlapping);
+        assertEquals(List.of(20L), showTimeIndex.findOverlapping("Theater 8", start, start.plusSeconds(60),
+                theater -> List.of()));
+    }
+
+    @Test
+    void addShowTimeFailingToSaveFreesItsSlotTest() {
+        Instant start = Instant.parse("2030-01-01T10:00:00Z");
+        ShowTime failing = newShowTime(22L, "Theater 7", start, start.plusSeconds(2 * 60 * 60));
+        ShowTime retried = newShowTime(23L, "Theater 7", start, start.plusSeconds(2 * 60 * 60));
+        when(showTimeRepository.save(failing)).thenThrow(new IllegalStateException("connection lost"));
+        when(showTimeRepository.save(retried)).thenReturn(retried);
+
+        assertThrows(IllegalStateException.class, () -> showTimeService.addShowTime(failing));
+
+        assertEquals(retried, showTimeService.addShowTime(retried));
+    }
+
+    private Booking seatBooking(int seatNumber) {
+        Booking booking = new Booking();
+        booking.setShowtimeId(1L);
+        booking.setSeatNumber(seatNumber);
+        return booking;
+    }
+
+    private ShowTime newShowTime(Long id, String theater, Instant startTime, Instant endTime) {
+        ShowTime newShowTime = new ShowTime();
+        newShowTime.setId(id);
+        newShowTime.setMovieId(1L);
+        newShowTime.setTheater(theater);
+        newShowTime.setStartTime(startTime);
+        newShowTime.setEndTime(endTime);
+        newShowTime.setPrice(10.0);
+        return newShowTime;
+    }
+}